@@ -0,0 +1,96 @@
+package io.noties.enhance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of types and members, keys are created beforehand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApiInfoStoreBenchmark {
+
+    private static final int TYPES = 5000;
+
+    @Param({"memory", "mapped"})
+    public String store;
+
+    private ApiInfoStore apiInfoStore;
+
+    private final String[] types = new String[TYPES];
+    private final String[] fields = new String[SyntheticApi.FIELDS];
+    private final String[] methods = new String[SyntheticApi.METHODS];
+
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        for (int i = 0; i < types.length; i++) {
+            types[i] = SyntheticApi.type(i);
+        }
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = SyntheticApi.field(i);
+        }
+        for (int i = 0; i < methods.length; i++) {
+            // store keeps signatures with simple type names
+            methods[i] = ApiInfoStoreImpl.Parser.normalizeMethodSignature(SyntheticApi.method(i));
+        }
+        final File xml = SyntheticApi.xml(TYPES);
+        if ("mapped".equals(store)) {
+            final File folder = Files.createTempDirectory("api-versions-cache").toFile();
+            folder.deleteOnExit();
+            apiInfoStore = ApiInfoStoreCache.load(xml, folder, false);
+        } else {
+            apiInfoStore = ApiInfoStore.create(xml);
+        }
+    }
+
+    @Benchmark
+    public void lookupType(Blackhole blackhole) {
+        final int i = next();
+        blackhole.consume(apiInfoStore.type(types[i % TYPES]));
+    }
+
+    @Benchmark
+    public void lookupField(Blackhole blackhole) {
+        final int i = next();
+        blackhole.consume(apiInfoStore.field(types[i % TYPES], fields[i % fields.length]));
+    }
+
+    @Benchmark
+    public void lookupMethod(Blackhole blackhole) {
+        final int i = next();
+        blackhole.consume(apiInfoStore.method(types[i % TYPES], methods[i % methods.length]));
+    }
+
+    @Benchmark
+    public void lookupMissing(Blackhole blackhole) {
+        final int i = next();
+        blackhole.consume(apiInfoStore.method(types[i % TYPES], "missing()V"));
+    }
+
+    @Benchmark
+    public boolean hasTopLevelType() {
+        return apiInfoStore.hasTopLevelType(types[next() % TYPES]);
+    }
+
+    // different keys on every call, so lookups are not all served by the same cache lines
+    private int next() {
+        index = (index + 7919) & Integer.MAX_VALUE;
+        return index;
+    }
+}
@@ -0,0 +1,42 @@
+package io.noties.enhance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a large api-versions.xml
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ApiInfoStoreCreateBenchmark {
+
+    @Param({"stream", "dom"})
+    public String parser;
+
+    @Param({"5000"})
+    public int types;
+
+    private File xml;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        xml = SyntheticApi.xml(types);
+    }
+
+    @Benchmark
+    public ApiInfoStore create() {
+        return ApiInfoStore.create(xml, "dom".equals(parser));
+    }
+}
@@ -0,0 +1,69 @@
+package io.noties.enhance;
+
+import io.noties.enhance.options.SourceFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole processing of a single java file: read, parse, add api info and print (or format, or splice)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProcessJavaFileBenchmark {
+
+    @Param({"NONE", "AOSP", "GOOGLE", "SPLICE"})
+    public String format;
+
+    @Param({"34"})
+    public int sdk;
+
+    private EnhanceWriterImpl writer;
+
+    private File file;
+
+    private Timings timings;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        final File xml = SyntheticApi.xml(1);
+        final ApiInfoStore store = ApiInfoStore.create(xml);
+
+        final boolean splice = "SPLICE".equals(format);
+
+        writer = new EnhanceWriterImpl(
+                sdk,
+                splice ? SourceFormat.NONE : SourceFormat.valueOf(format),
+                store,
+                ApiVersionFormatter.create(),
+                null,
+                null,
+                null,
+                splice,
+                timings = Timings.create()
+        );
+
+        file = File.createTempFile("Type0", ".java");
+        file.deleteOnExit();
+        Files.write(file.toPath(), SyntheticApi.source(0).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public CharSequence process() {
+        return writer.processJavaFile(file, timings.start());
+    }
+}
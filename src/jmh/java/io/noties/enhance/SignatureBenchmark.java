@@ -0,0 +1,60 @@
+package io.noties.enhance;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Method signatures: byte code signature of a declaration and normalization of signatures
+ * from api-versions.xml
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SignatureBenchmark {
+
+    private static final String[] SIGNATURES = {
+            "<init>()V",
+            "onCreate(Landroid/os/Bundle;)V",
+            "onMultiWindowModeChanged(ZLandroid/content/res/Configuration;)V",
+            "getSystemService(Ljava/lang/Class;)Ljava/lang/Object;",
+            "startActivityForResult(Landroid/content/Intent;ILandroid/os/Bundle;)V",
+            "dispatchKeyEvent(Landroid/view/KeyEvent;)Z",
+            "setContentView(Landroid/view/View;Landroid/view/ViewGroup$LayoutParams;)V",
+            "values()[Landroid/graphics/Bitmap$Config;"
+    };
+
+    @SuppressWarnings("rawtypes")
+    private List<CallableDeclaration> declarations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        declarations = StaticJavaParser.parse(SyntheticApi.source(0))
+                .findAll(CallableDeclaration.class);
+    }
+
+    @Benchmark
+    public void normalizeMethodSignature(Blackhole blackhole) {
+        for (String signature : SIGNATURES) {
+            blackhole.consume(ApiInfoStoreImpl.Parser.normalizeMethodSignature(signature));
+        }
+    }
+
+    @Benchmark
+    public void byteCodeSignature(Blackhole blackhole) {
+        for (CallableDeclaration<?> declaration : declarations) {
+            blackhole.consume(ByteCodeSignature.create(declaration));
+        }
+    }
+}
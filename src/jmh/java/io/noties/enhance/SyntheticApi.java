@@ -0,0 +1,90 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Generates api-versions.xml and matching java sources, so benchmarks do not depend on
+ * an installed Android SDK. Sizes are close to the real SDK (~5000 classes)
+ */
+abstract class SyntheticApi {
+
+    static final String PACKAGE = "android/synthetic";
+
+    static final int METHODS = 40;
+    static final int FIELDS = 10;
+
+    @Nonnull
+    static String type(int index) {
+        return PACKAGE + "/Type" + index;
+    }
+
+    @Nonnull
+    static String method(int index) {
+        // mix of primitives, arrays and object types
+        return "method" + index + "(IJ[Ljava/lang/String;Landroid/os/Bundle;)Landroid/view/View;";
+    }
+
+    @Nonnull
+    static String field(int index) {
+        return "FIELD_" + index;
+    }
+
+    @Nonnull
+    static File xml(int types) throws IOException {
+        final File file = File.createTempFile("api-versions", ".xml");
+        file.deleteOnExit();
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<api version=\"3\">\n");
+            for (int t = 0; t < types; t++) {
+                writer.write("\t<class name=\"" + type(t) + "\" since=\"" + (1 + t % 34) + "\">\n");
+                writer.write("\t\t<extends name=\"java/lang/Object\"/>\n");
+                writer.write("\t\t<method name=\"&lt;init&gt;()V\"/>\n");
+                for (int m = 0; m < METHODS; m++) {
+                    writer.write("\t\t<method name=\"" + method(m) + "\" since=\"" + (1 + m % 34) + "\""
+                            + (m % 7 == 0 ? " deprecated=\"30\"" : "") + "/>\n");
+                }
+                for (int f = 0; f < FIELDS; f++) {
+                    writer.write("\t\t<field name=\"" + field(f) + "\" since=\"" + (1 + f % 34) + "\"/>\n");
+                }
+                writer.write("\t</class>\n");
+            }
+            writer.write("</api>\n");
+        }
+        return file;
+    }
+
+    @Nonnull
+    static String source(int index) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("/*\n * Copyright (C) 2006 The Android Open Source Project\n */\n\n")
+                .append("package ").append(PACKAGE.replace('/', '.')).append(";\n\n")
+                .append("import android.os.Bundle;\nimport android.view.View;\n\n")
+                .append("/**\n * Synthetic type\n */\n")
+                .append("public class Type").append(index).append(" {\n\n");
+        for (int f = 0; f < FIELDS; f++) {
+            builder.append("    /** Field ").append(f).append(" */\n")
+                    .append("    public static final int ").append(field(f)).append(" = ").append(f).append(";\n\n");
+        }
+        builder.append("    public Type").append(index).append("() {\n    }\n\n");
+        for (int m = 0; m < METHODS; m++) {
+            builder.append("    /**\n     * Method ").append(m).append("\n     *\n     * @param value a value\n     */\n")
+                    .append("    public View method").append(m)
+                    .append("(int value, long time, String[] names, Bundle bundle) {\n")
+                    .append("        if (value > 0) {\n")
+                    .append("            return null;\n")
+                    .append("        }\n")
+                    .append("        throw new RuntimeException(\"Stub!\");\n")
+                    .append("    }\n\n");
+        }
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+    private SyntheticApi() {
+    }
+}
@@ -1,23 +1,61 @@
 package io.noties.enhance;
 
-import javax.annotation.Nullable;
+import javax.annotation.Nonnull;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Versions are stored as primitives, {@link #NONE} stands for an absent version. Instances are
+ * shared (there are only a few hundred distinct pairs), obtain them with {@link #of(int, int)}
+ */
 public class ApiInfo {
 
-    @Nullable
-    public final Integer since;
-    @Nullable public final Integer deprecated;
+    public static final int NONE = 0;
 
-    public ApiInfo(@Nullable Integer since, @Nullable Integer deprecated) {
+    // covers all known SDK versions, anything bigger goes to the map
+    private static final int CACHED = 128;
+
+    private static final ApiInfo[] CACHE = new ApiInfo[CACHED * CACHED];
+
+    private static final ConcurrentMap<Long, ApiInfo> MAP = new ConcurrentHashMap<>();
+
+    @Nonnull
+    public static ApiInfo of(int since, int deprecated) {
+        if (since >= 0 && since < CACHED
+                && deprecated >= 0 && deprecated < CACHED) {
+            final int index = since * CACHED + deprecated;
+            ApiInfo info = CACHE[index];
+            if (info == null) {
+                // a race would create equal instances, final fields make it safe to publish
+                info = new ApiInfo(since, deprecated);
+                CACHE[index] = info;
+            }
+            return info;
+        }
+        return MAP.computeIfAbsent(((long) since << 32) | (deprecated & 0xFFFFFFFFL), key -> new ApiInfo(since, deprecated));
+    }
+
+    public final int since;
+    public final int deprecated;
+
+    ApiInfo(int since, int deprecated) {
         this.since = since;
         this.deprecated = deprecated;
     }
 
+    public boolean hasSince() {
+        return since != NONE;
+    }
+
+    public boolean hasDeprecated() {
+        return deprecated != NONE;
+    }
+
     @Override
     public String toString() {
         return "ApiInfo{" +
-                "since='" + since + '\'' +
-                ", deprecated='" + deprecated + '\'' +
+                "since='" + (hasSince() ? since : null) + '\'' +
+                ", deprecated='" + (hasDeprecated() ? deprecated : null) + '\'' +
                 '}';
     }
 }
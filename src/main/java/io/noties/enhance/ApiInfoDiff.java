@@ -0,0 +1,216 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Structural difference between two `api-versions.xml` (for example, two revisions of the same
+ * platform): added, removed and re-versioned (changed `since` or `deprecated`) types, fields and
+ * methods. Each type is hashed with its members (64-bit), only types with different hashes are
+ * compared member by member
+ */
+abstract class ApiInfoDiff {
+
+    // fields and methods with the same name and versions must not have the same hash
+    private static final long FIELD = 0x6669656c64L;
+
+    /**
+     * Contents of a store with per-type hashes, can be created on the thread that loads the store
+     */
+    static class Input {
+
+        final Map<String, ApiInfoStore.TypeVersion> info;
+        final Map<String, Long> hashes;
+
+        Input(@Nonnull Map<String, ApiInfoStore.TypeVersion> info) {
+            this.info = info;
+            this.hashes = new HashMap<>(info.size() * 4 / 3 + 1);
+            for (Map.Entry<String, ApiInfoStore.TypeVersion> entry : info.entrySet()) {
+                hashes.put(entry.getKey(), hash(entry.getValue()));
+            }
+        }
+    }
+
+    @Nonnull
+    static ApiInfoDiff create(@Nonnull Input old, @Nonnull Input updated) {
+        return new Impl(old, updated);
+    }
+
+    /**
+     * A type that has been added (no {@link #old}), removed (no {@link #updated}) or re-versioned,
+     * or that has members that have been
+     */
+    static class TypeDiff {
+
+        final String type;
+        @Nullable
+        final ApiInfo old;
+        @Nullable
+        final ApiInfo updated;
+
+        final List<MemberDiff> fields = new ArrayList<>(0);
+        final List<MemberDiff> methods = new ArrayList<>(0);
+
+        TypeDiff(@Nonnull String type, @Nullable ApiInfo old, @Nullable ApiInfo updated) {
+            this.type = type;
+            this.old = old;
+            this.updated = updated;
+        }
+    }
+
+    static class MemberDiff {
+
+        final String name;
+        @Nullable
+        final ApiInfo old;
+        @Nullable
+        final ApiInfo updated;
+
+        MemberDiff(@Nonnull String name, @Nullable ApiInfo old, @Nullable ApiInfo updated) {
+            this.name = name;
+            this.old = old;
+            this.updated = updated;
+        }
+    }
+
+    /**
+     * @return differences sorted by type name, members of added and removed types are not listed
+     */
+    @Nonnull
+    abstract List<TypeDiff> types();
+
+    /**
+     * @return number of types that are present in both stores, but have different hashes (or numbers of members)
+     */
+    abstract int comparedTypes();
+
+    static boolean sameVersions(@Nonnull ApiInfo left, @Nonnull ApiInfo right) {
+        return left.since == right.since
+                && left.deprecated == right.deprecated;
+    }
+
+
+    private static class Impl extends ApiInfoDiff {
+
+        private static final Comparator<MemberDiff> BY_NAME = Comparator.comparing(member -> member.name);
+
+        private final List<TypeDiff> types = new ArrayList<>();
+
+        private int comparedTypes;
+
+        Impl(@Nonnull Input old, @Nonnull Input updated) {
+
+            for (Map.Entry<String, ApiInfoStore.TypeVersion> entry : updated.info.entrySet()) {
+
+                final String type = entry.getKey();
+                final ApiInfoStore.TypeVersion updatedType = entry.getValue();
+                final ApiInfoStore.TypeVersion oldType = old.info.get(type);
+
+                if (oldType == null) {
+                    types.add(new TypeDiff(type, null, updatedType));
+                } else if (!old.hashes.get(type).equals(updated.hashes.get(type))
+                        // a removed and an added member cannot cancel out then
+                        || oldType.fields.size() != updatedType.fields.size()
+                        || oldType.methods.size() != updatedType.methods.size()) {
+                    comparedTypes += 1;
+                    types.add(compare(type, oldType, updatedType));
+                }
+            }
+
+            for (Map.Entry<String, ApiInfoStore.TypeVersion> entry : old.info.entrySet()) {
+                if (!updated.info.containsKey(entry.getKey())) {
+                    types.add(new TypeDiff(entry.getKey(), entry.getValue(), null));
+                }
+            }
+
+            types.sort(Comparator.comparing(diff -> diff.type));
+        }
+
+        @Nonnull
+        @Override
+        List<TypeDiff> types() {
+            return types;
+        }
+
+        @Override
+        int comparedTypes() {
+            return comparedTypes;
+        }
+
+        @Nonnull
+        private static TypeDiff compare(
+                @Nonnull String type,
+                @Nonnull ApiInfoStore.TypeVersion old,
+                @Nonnull ApiInfoStore.TypeVersion updated) {
+
+            final TypeDiff diff = new TypeDiff(type, old, updated);
+
+            compare(old.fields, updated.fields, diff.fields);
+            compare(old.methods, updated.methods, diff.methods);
+
+            return diff;
+        }
+
+        private static void compare(
+                @Nonnull Map<String, ApiInfo> old,
+                @Nonnull Map<String, ApiInfo> updated,
+                @Nonnull List<MemberDiff> out) {
+
+            final Set<String> names = new HashSet<>(old.keySet());
+            names.addAll(updated.keySet());
+
+            for (String name : names) {
+                final ApiInfo left = old.get(name);
+                final ApiInfo right = updated.get(name);
+                if (left == null || right == null || !sameVersions(left, right)) {
+                    out.add(new MemberDiff(name, left, right));
+                }
+            }
+
+            out.sort(BY_NAME);
+        }
+    }
+
+    // order-independent sum of mixed hashes of the type versions and its members
+    private static long hash(@Nonnull ApiInfoStore.TypeVersion type) {
+        long hash = mix(versions(type));
+        for (Map.Entry<String, ApiInfo> entry : type.fields.entrySet()) {
+            hash += mix(hash(entry.getKey()) ^ versions(entry.getValue()) ^ FIELD);
+        }
+        for (Map.Entry<String, ApiInfo> entry : type.methods.entrySet()) {
+            hash += mix(hash(entry.getKey()) ^ versions(entry.getValue()));
+        }
+        return hash;
+    }
+
+    // 64-bit FNV-1a of the characters (String#hashCode is too short, colliding names are easy to find)
+    private static long hash(@Nonnull CharSequence name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0, length = name.length(); i < length; i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long versions(@Nonnull ApiInfo info) {
+        return ((long) info.since << 16) | info.deprecated;
+    }
+
+    // finalizer of MurmurHash3, spreads bits so that sums of hashes do not cancel out
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -10,15 +10,52 @@ public abstract class ApiInfoStore {
 
     @Nonnull
     public static ApiInfoStore create(@Nonnull File apiVersions) {
-        return new ApiInfoStoreImpl(apiVersions);
+        return create(apiVersions, false);
+    }
+
+    /**
+     * @param dom if `api-versions.xml` should be parsed with the DOM parser (whole document is loaded
+     *            in memory), otherwise streaming parser is used
+     */
+    @Nonnull
+    public static ApiInfoStore create(@Nonnull File apiVersions, boolean dom) {
+        return new ApiInfoStoreImpl(apiVersions, dom);
+    }
+
+    /**
+     * Uses binary index of `api-versions.xml` stored in the `folder` (created if missing)
+     *
+     * @see #create(File, boolean)
+     */
+    @Nonnull
+    public static ApiInfoStore cached(@Nonnull File apiVersions, @Nonnull File folder, boolean dom) {
+        return ApiInfoStoreCache.load(apiVersions, folder, dom);
+    }
+
+    /**
+     * @param sha256 hex SHA-256 of the `apiVersions` contents, if it is already known
+     * @see #cached(File, File, boolean)
+     */
+    @Nonnull
+    public static ApiInfoStore cached(@Nonnull File apiVersions, @Nonnull String sha256, @Nonnull File folder, boolean dom) {
+        return ApiInfoStoreCache.load(apiVersions, sha256, folder, dom);
+    }
+
+    /**
+     * @return view of the store (created from `api-versions.xml` of a newer platform) as of the
+     * specified SDK version: entries added after it are absent, later deprecations are dropped
+     */
+    @Nonnull
+    public static ApiInfoStore filtered(@Nonnull ApiInfoStore store, int sdk) {
+        return new ApiInfoStoreFiltered(store, sdk);
     }
 
     public static class TypeVersion extends ApiInfo {
 
-        final Map<String, ApiInfo> fields = new HashMap<>(3);
-        final Map<String, ApiInfo> methods = new HashMap<>(3);
+        final Map<String, ApiInfo> fields = new HashMap<>();
+        final Map<String, ApiInfo> methods = new HashMap<>();
 
-        TypeVersion(@Nullable Integer since, @Nullable Integer deprecated) {
+        TypeVersion(int since, int deprecated) {
             super(since, deprecated);
         }
     }
@@ -32,6 +69,42 @@ public abstract class ApiInfoStore {
     @Nullable
     public abstract ApiInfo method(@Nonnull String type, @Nonnull String signature);
 
+    /**
+     * Lookup by a signature that is not a String (for example, a reused {@link StringBuilder}),
+     * implementations compare contents without creating a String
+     */
+    @Nullable
+    public ApiInfo method(@Nonnull String type, @Nonnull CharSequence signature) {
+        return method(type, signature.toString());
+    }
+
+    /**
+     * @param type top-level type, for example `android/app/Activity`
+     * @return if there is information for the type itself or any of its nested types (`android/app/Activity$Inner`)
+     */
+    public abstract boolean hasTopLevelType(@Nonnull String type);
+
     @Nonnull
     public abstract Map<String, TypeVersion> info();
+
+    // built on first request and kept with the store
+    private volatile ApiVersionIndex versionIndex;
+
+    /**
+     * @return index of {@link #info()} by the SDK version
+     */
+    @Nonnull
+    ApiVersionIndex versionIndex() {
+        ApiVersionIndex index = this.versionIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = this.versionIndex;
+                if (index == null) {
+                    index = ApiVersionIndex.create(info());
+                    this.versionIndex = index;
+                }
+            }
+        }
+        return index;
+    }
 }
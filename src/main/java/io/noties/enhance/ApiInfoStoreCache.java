@@ -0,0 +1,455 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.noties.enhance.Log.debug;
+import static io.noties.enhance.Log.log;
+import static io.noties.enhance.Log.warn;
+
+/**
+ * Binary index of parsed `api-versions.xml`. Index file is named after the path, the size and
+ * the SHA-256 of the xml file, so any change to the xml results in a new index (and indices of
+ * its previous contents are removed). Layout (big-endian):
+ * <pre>
+ * header:  magic, version, typeCount, memberCount, stringsLength
+ * types:   typeCount * (nameOffset, nameLength, since, deprecated, fieldsIndex, fieldsCount, methodsIndex, methodsCount)
+ * members: memberCount * (keyOffset, keyLength, since, deprecated)
+ * strings: stringsLength bytes
+ * </pre>
+ * Types are sorted by name, fields and methods of each type are sorted by key, so lookups
+ * are binary searches directly in the memory-mapped file. Absent version is stored as `0`.
+ */
+abstract class ApiInfoStoreCache {
+
+    private static final int MAGIC = 0x454E4843;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 5 * 4;
+    private static final int TYPE_SIZE = 8 * 4;
+    private static final int MEMBER_SIZE = 4 * 4;
+
+    private static final String PREFIX = "api-versions-";
+    private static final String EXTENSION = ".bin";
+
+    @Nonnull
+    static ApiInfoStore load(@Nonnull File apiVersions, @Nonnull File folder, boolean dom) {
+        final String sha256;
+        try {
+            sha256 = Hash.sha256(apiVersions);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read api-versions.xml at path: " + apiVersions.getPath(), e);
+        }
+        return load(apiVersions, sha256, folder, dom);
+    }
+
+    /**
+     * @param sha256 hex SHA-256 of the `apiVersions` contents
+     */
+    @Nonnull
+    static ApiInfoStore load(@Nonnull File apiVersions, @Nonnull String sha256, @Nonnull File folder, boolean dom) {
+
+        final String prefix = prefix(apiVersions);
+        final File file = new File(folder, prefix + apiVersions.length() + "-" + sha256 + EXTENSION);
+
+        if (file.exists()) {
+            try {
+                final ApiInfoStore store = map(file);
+                if (store != null) {
+                    log("[Enhance] using cached api-versions.xml index: %s", file.getPath());
+                    return store;
+                }
+            } catch (IOException e) {
+                warn("[Enhance] cannot read api-versions.xml index, it will be re-created: %s", e.getMessage());
+            }
+        }
+
+        final ApiInfoStore store = ApiInfoStore.create(apiVersions, dom);
+
+        try {
+            write(store.info(), folder, file);
+            log("[Enhance] created api-versions.xml index: %s", file.getPath());
+        } catch (IOException e) {
+            warn("[Enhance] cannot create api-versions.xml index: %s", e.getMessage());
+            return store;
+        }
+
+        prune(folder, prefix, file);
+
+        return store;
+    }
+
+    // indices of previous contents of the same file, they would never be used again
+    static void prune(@Nonnull File folder, @Nonnull String prefix, @Nonnull File keep) {
+        final File[] files = folder.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.equals(keep)) {
+                try {
+                    Files.deleteIfExists(file.toPath());
+                    debug("[Enhance] removed previous api-versions.xml index: %s", file.getPath());
+                } catch (IOException e) {
+                    // could be mapped by a different process, removed the next time
+                    debug("[Enhance] cannot remove previous api-versions.xml index: %s", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // distinguishes xml files of different platforms, all indices are in the same folder
+    @Nonnull
+    static String prefix(@Nonnull File apiVersions) {
+        final byte[] digest = Hash.sha256().digest(apiVersions.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        return PREFIX + Hash.hex(digest).substring(0, 16) + "-";
+    }
+
+    @Nullable
+    static ApiInfoStore map(@Nonnull File file) throws IOException {
+
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // mapping stays valid after channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < HEADER_SIZE
+                || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != VERSION) {
+            return null;
+        }
+
+        final int typeCount = buffer.getInt(8);
+        final int memberCount = buffer.getInt(12);
+        final int stringsLength = buffer.getInt(16);
+
+        final long expected = (long) HEADER_SIZE
+                + (long) typeCount * TYPE_SIZE
+                + (long) memberCount * MEMBER_SIZE
+                + stringsLength;
+        if (expected != buffer.capacity()) {
+            return null;
+        }
+
+        return new MappedStore(buffer, typeCount, memberCount);
+    }
+
+    static void write(
+            @Nonnull Map<String, ApiInfoStore.TypeVersion> info,
+            @Nonnull File folder,
+            @Nonnull File file
+    ) throws IOException {
+
+        final List<String> types = sorted(info.keySet());
+
+        final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        final ByteArrayOutputStream typesTable = new ByteArrayOutputStream(types.size() * TYPE_SIZE);
+        final ByteArrayOutputStream membersTable = new ByteArrayOutputStream();
+
+        final DataOutputStream typesOut = new DataOutputStream(typesTable);
+        final DataOutputStream membersOut = new DataOutputStream(membersTable);
+
+        int memberCount = 0;
+
+        for (String type : types) {
+
+            final ApiInfoStore.TypeVersion version = info.get(type);
+
+            final List<String> fields = sorted(version.fields.keySet());
+            final List<String> methods = sorted(version.methods.keySet());
+
+            string(typesOut, strings, type);
+            typesOut.writeInt(version.since);
+            typesOut.writeInt(version.deprecated);
+            typesOut.writeInt(memberCount);
+            typesOut.writeInt(fields.size());
+            typesOut.writeInt(memberCount + fields.size());
+            typesOut.writeInt(methods.size());
+
+            members(membersOut, strings, fields, version.fields);
+            members(membersOut, strings, methods, version.methods);
+
+            memberCount += fields.size() + methods.size();
+        }
+
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Cannot create folder: " + folder.getPath());
+        }
+
+        // write to a temporary file first, so partially written index is never picked up
+        final File temp = File.createTempFile("api-versions", ".tmp", folder);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(types.size());
+                out.writeInt(memberCount);
+                out.writeInt(strings.size());
+                typesTable.writeTo(out);
+                membersTable.writeTo(out);
+                strings.writeTo(out);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private static void members(
+            @Nonnull DataOutputStream out,
+            @Nonnull ByteArrayOutputStream strings,
+            @Nonnull List<String> keys,
+            @Nonnull Map<String, ApiInfo> map
+    ) throws IOException {
+        for (String key : keys) {
+            final ApiInfo info = map.get(key);
+            string(out, strings, key);
+            out.writeInt(info.since);
+            out.writeInt(info.deprecated);
+        }
+    }
+
+    private static void string(
+            @Nonnull DataOutputStream out,
+            @Nonnull ByteArrayOutputStream strings,
+            @Nonnull String value
+    ) throws IOException {
+        // lookups compare stored bytes with chars directly, which requires ASCII
+        for (int i = 0, length = value.length(); i < length; i++) {
+            if (value.charAt(i) > 0x7F) {
+                throw new IOException("Non-ASCII key: " + value);
+            }
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        out.writeInt(strings.size());
+        out.writeInt(bytes.length);
+        strings.write(bytes);
+    }
+
+    @Nonnull
+    private static List<String> sorted(@Nonnull Collection<String> collection) {
+        final List<String> list = new ArrayList<>(collection);
+        Collections.sort(list);
+        return list;
+    }
+
+    // all reads are absolute, so a single instance can be shared between threads
+    private static class MappedStore extends ApiInfoStore {
+
+        private final ByteBuffer buffer;
+        private final int typeCount;
+        private final int typesStart;
+        private final int membersStart;
+        private final int stringsStart;
+
+        private volatile Map<String, TypeVersion> info;
+
+        MappedStore(@Nonnull ByteBuffer buffer, int typeCount, int memberCount) {
+            this.buffer = buffer;
+            this.typeCount = typeCount;
+            this.typesStart = HEADER_SIZE;
+            this.membersStart = typesStart + typeCount * TYPE_SIZE;
+            this.stringsStart = membersStart + memberCount * MEMBER_SIZE;
+        }
+
+        @Nullable
+        @Override
+        public ApiInfo type(@Nonnull String type) {
+            final int position = findType(type);
+            return position < 0
+                    ? null
+                    : apiInfo(position + 8);
+        }
+
+        @Nullable
+        @Override
+        public ApiInfo field(@Nonnull String type, @Nonnull String name) {
+            final int position = findType(type);
+            return position < 0
+                    ? null
+                    : findMember(buffer.getInt(position + 16), buffer.getInt(position + 20), name);
+        }
+
+        @Nullable
+        @Override
+        public ApiInfo method(@Nonnull String type, @Nonnull String signature) {
+            return method(type, (CharSequence) signature);
+        }
+
+        @Nullable
+        @Override
+        public ApiInfo method(@Nonnull String type, @Nonnull CharSequence signature) {
+            final int position = findType(type);
+            return position < 0
+                    ? null
+                    : findMember(buffer.getInt(position + 24), buffer.getInt(position + 28), signature);
+        }
+
+        @Override
+        public boolean hasTopLevelType(@Nonnull String type) {
+            // nested types (`$` suffix) immediately follow the type in the sorted order
+            final int index = lowerBound(type);
+            if (index == typeCount) {
+                return false;
+            }
+            final int position = typesStart + index * TYPE_SIZE;
+            final int offset = stringsStart + buffer.getInt(position);
+            final int length = buffer.getInt(position + 4);
+            final int typeLength = type.length();
+            if (length < typeLength) {
+                return false;
+            }
+            for (int i = 0; i < typeLength; i++) {
+                if ((buffer.get(offset + i) & 0xFF) != type.charAt(i)) {
+                    return false;
+                }
+            }
+            return length == typeLength
+                    || buffer.get(offset + typeLength) == '$';
+        }
+
+        @Nonnull
+        @Override
+        public Map<String, TypeVersion> info() {
+            Map<String, TypeVersion> info = this.info;
+            if (info == null) {
+                synchronized (this) {
+                    info = this.info;
+                    if (info == null) {
+                        this.info = info = Collections.unmodifiableMap(materialize());
+                    }
+                }
+            }
+            return info;
+        }
+
+        // returns position of the type entry or -1
+        private int findType(@Nonnull String type) {
+            int low = 0;
+            int high = typeCount - 1;
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+                final int position = typesStart + middle * TYPE_SIZE;
+                final int compare = compare(position, type);
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        // index of the first type that is not less than the key
+        private int lowerBound(@Nonnull String type) {
+            int low = 0;
+            int high = typeCount;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (compare(typesStart + middle * TYPE_SIZE, type) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        @Nullable
+        private ApiInfo findMember(int index, int count, @Nonnull CharSequence key) {
+            int low = index;
+            int high = index + count - 1;
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+                final int position = membersStart + middle * MEMBER_SIZE;
+                final int compare = compare(position, key);
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    return apiInfo(position + 8);
+                }
+            }
+            return null;
+        }
+
+        // compares string referenced at position (offset, length) with the key
+        private int compare(int position, @Nonnull CharSequence key) {
+            final int offset = stringsStart + buffer.getInt(position);
+            final int length = buffer.getInt(position + 4);
+            final int keyLength = key.length();
+            for (int i = 0, max = Math.min(length, keyLength); i < max; i++) {
+                final int diff = (buffer.get(offset + i) & 0xFF) - key.charAt(i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length - keyLength;
+        }
+
+        @Nonnull
+        private String string(int position) {
+            final int offset = stringsStart + buffer.getInt(position);
+            final int length = buffer.getInt(position + 4);
+            final char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) (buffer.get(offset + i) & 0xFF);
+            }
+            return new String(chars);
+        }
+
+        @Nonnull
+        private ApiInfo apiInfo(int position) {
+            return ApiInfo.of(buffer.getInt(position), buffer.getInt(position + 4));
+        }
+
+        @Nonnull
+        private Map<String, TypeVersion> materialize() {
+            final Map<String, TypeVersion> map = new HashMap<>(typeCount * 2);
+            for (int i = 0; i < typeCount; i++) {
+                final int position = typesStart + i * TYPE_SIZE;
+                final TypeVersion version = new TypeVersion(
+                        buffer.getInt(position + 8),
+                        buffer.getInt(position + 12)
+                );
+                materialize(version.fields, buffer.getInt(position + 16), buffer.getInt(position + 20));
+                materialize(version.methods, buffer.getInt(position + 24), buffer.getInt(position + 28));
+                map.put(string(position), version);
+            }
+            return map;
+        }
+
+        private void materialize(@Nonnull Map<String, ApiInfo> map, int index, int count) {
+            for (int i = index, max = index + count; i < max; i++) {
+                final int position = membersStart + i * MEMBER_SIZE;
+                map.put(string(position), apiInfo(position + 8));
+            }
+        }
+    }
+
+    private ApiInfoStoreCache() {
+    }
+}
@@ -0,0 +1,116 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * View of a store (created from a newer `api-versions.xml`) as of an older SDK version: entries
+ * added after the version are absent (as are members of such types, even if the members have
+ * no versions themselves) and deprecations that happened after it are dropped
+ */
+class ApiInfoStoreFiltered extends ApiInfoStore {
+
+    private final ApiInfoStore store;
+    private final int sdk;
+
+    // materialized on request
+    private volatile Map<String, TypeVersion> info;
+
+    ApiInfoStoreFiltered(@Nonnull ApiInfoStore store, int sdk) {
+        this.store = store;
+        this.sdk = sdk;
+    }
+
+    @Nullable
+    @Override
+    public ApiInfo type(@Nonnull String type) {
+        return filter(store.type(type));
+    }
+
+    @Nullable
+    @Override
+    public ApiInfo field(@Nonnull String type, @Nonnull String name) {
+        return type(type) != null
+                ? filter(store.field(type, name))
+                : null;
+    }
+
+    @Nullable
+    @Override
+    public ApiInfo method(@Nonnull String type, @Nonnull String signature) {
+        return type(type) != null
+                ? filter(store.method(type, signature))
+                : null;
+    }
+
+    @Nullable
+    @Override
+    public ApiInfo method(@Nonnull String type, @Nonnull CharSequence signature) {
+        return type(type) != null
+                ? filter(store.method(type, signature))
+                : null;
+    }
+
+    @Override
+    public boolean hasTopLevelType(@Nonnull String type) {
+        final ApiInfo info = store.type(type);
+        return store.hasTopLevelType(type)
+                && (info == null || info.since <= sdk);
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, TypeVersion> info() {
+        Map<String, TypeVersion> info = this.info;
+        if (info == null) {
+            synchronized (this) {
+                info = this.info;
+                if (info == null) {
+                    info = Collections.unmodifiableMap(materialize());
+                    this.info = info;
+                }
+            }
+        }
+        return info;
+    }
+
+    @Nonnull
+    private Map<String, TypeVersion> materialize() {
+        final Map<String, TypeVersion> map = new HashMap<>();
+        for (Map.Entry<String, TypeVersion> entry : store.info().entrySet()) {
+            final TypeVersion original = entry.getValue();
+            final ApiInfo type = filter(original);
+            if (type == null) {
+                continue;
+            }
+            final TypeVersion version = new TypeVersion(type.since, type.deprecated);
+            filter(original.fields, version.fields);
+            filter(original.methods, version.methods);
+            map.put(entry.getKey(), version);
+        }
+        return map;
+    }
+
+    private void filter(@Nonnull Map<String, ApiInfo> source, @Nonnull Map<String, ApiInfo> destination) {
+        for (Map.Entry<String, ApiInfo> entry : source.entrySet()) {
+            final ApiInfo info = filter(entry.getValue());
+            if (info != null) {
+                destination.put(entry.getKey(), info);
+            }
+        }
+    }
+
+    @Nullable
+    private ApiInfo filter(@Nullable ApiInfo info) {
+        if (info == null
+                || info.since > sdk) {
+            return null;
+        }
+        return info.deprecated > sdk
+                ? ApiInfo.of(info.since, ApiInfo.NONE)
+                : info;
+    }
+}
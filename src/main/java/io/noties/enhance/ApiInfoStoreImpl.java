@@ -9,63 +9,414 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * Parsed contents are frozen into open-addressing tables: keys and primitive versions are stored
+ * in parallel arrays (no entry objects), members of all types share a table and are keyed by
+ * the owner type and the name. Nothing is modified after construction, so concurrent readers
+ * need no synchronization.
+ */
 class ApiInfoStoreImpl extends ApiInfoStore {
 
-    private final Map<String, TypeVersion> map;
+    private final Table types;
+    private final Table topLevelTypes;
+    private final Table fields;
+    private final Table methods;
 
-    ApiInfoStoreImpl(@Nonnull File apiVersions) {
-        this.map = new Parser(apiVersions).parse();
+    // materialized on request
+    private volatile Map<String, TypeVersion> info;
+
+    ApiInfoStoreImpl(@Nonnull File apiVersions, boolean dom) {
+        this(dom
+                ? new DomParser(apiVersions).parse()
+                : new StreamParser(apiVersions).parse());
+    }
+
+    ApiInfoStoreImpl(@Nonnull Map<String, TypeVersion> map) {
+
+        types = new Table(map.size());
+        topLevelTypes = new Table(map.size());
+
+        int fieldCount = 0;
+        int methodCount = 0;
+        for (TypeVersion version : map.values()) {
+            fieldCount += version.fields.size();
+            methodCount += version.methods.size();
+        }
+
+        fields = new Table(fieldCount);
+        methods = new Table(methodCount);
+
+        for (Map.Entry<String, TypeVersion> entry : map.entrySet()) {
+
+            final String type = entry.getKey();
+            final TypeVersion version = entry.getValue();
+
+            final int owner = types.put(type, Table.NO_OWNER, version.since, version.deprecated);
+
+            final int index = type.indexOf('$');
+            final String topLevelType = index < 0 ? type : type.substring(0, index);
+            if (topLevelTypes.find(topLevelType, topLevelType.hashCode(), Table.NO_OWNER) < 0) {
+                topLevelTypes.put(topLevelType, Table.NO_OWNER, ApiInfo.NONE, ApiInfo.NONE);
+            }
+
+            for (Map.Entry<String, ApiInfo> field : version.fields.entrySet()) {
+                fields.put(field.getKey(), owner, field.getValue().since, field.getValue().deprecated);
+            }
+
+            for (Map.Entry<String, ApiInfo> method : version.methods.entrySet()) {
+                methods.put(method.getKey(), owner, method.getValue().since, method.getValue().deprecated);
+            }
+        }
     }
 
     @Nullable
     @Override
     public ApiInfo type(@Nonnull String type) {
-        return map.get(type);
+        return types.info(types.find(type, type.hashCode(), Table.NO_OWNER));
     }
 
     @Nullable
     @Override
     public ApiInfo field(@Nonnull String type, @Nonnull String name) {
-        final TypeVersion version = map.get(type);
-        return version != null
-                ? version.fields.get(name)
-                : null;
+        final int owner = types.find(type, type.hashCode(), Table.NO_OWNER);
+        return owner < 0
+                ? null
+                : fields.info(fields.find(name, name.hashCode(), owner));
     }
 
     @Nullable
     @Override
     public ApiInfo method(@Nonnull String type, @Nonnull String signature) {
-        final TypeVersion version = map.get(type);
-        return version != null
-                ? version.methods.get(signature)
-                : null;
+        final int owner = types.find(type, type.hashCode(), Table.NO_OWNER);
+        return owner < 0
+                ? null
+                : methods.info(methods.find(signature, signature.hashCode(), owner));
+    }
+
+    @Nullable
+    @Override
+    public ApiInfo method(@Nonnull String type, @Nonnull CharSequence signature) {
+        final int owner = types.find(type, type.hashCode(), Table.NO_OWNER);
+        return owner < 0
+                ? null
+                : methods.info(methods.find(signature, Table.hash(signature), owner));
     }
 
+    @Override
+    public boolean hasTopLevelType(@Nonnull String type) {
+        return topLevelTypes.find(type, type.hashCode(), Table.NO_OWNER) >= 0;
+    }
+
+    /**
+     * @return read-only copy of the contents, it is created on the first call
+     */
     @Nonnull
     @Override
     public Map<String, TypeVersion> info() {
+        Map<String, TypeVersion> info = this.info;
+        if (info == null) {
+            synchronized (this) {
+                info = this.info;
+                if (info == null) {
+                    info = Collections.unmodifiableMap(materialize());
+                    this.info = info;
+                }
+            }
+        }
+        return info;
+    }
+
+    @Nonnull
+    private Map<String, TypeVersion> materialize() {
+        final TypeVersion[] versions = new TypeVersion[types.keys.length];
+        final Map<String, TypeVersion> map = new HashMap<>(types.keys.length);
+        for (int slot = 0; slot < types.keys.length; slot++) {
+            final String type = types.keys[slot];
+            if (type != null) {
+                versions[slot] = new TypeVersion(types.since[slot], types.deprecated[slot]);
+                map.put(type, versions[slot]);
+            }
+        }
+        for (int slot = 0; slot < fields.keys.length; slot++) {
+            if (fields.keys[slot] != null) {
+                versions[fields.owners[slot]].fields.put(fields.keys[slot], fields.info(slot));
+            }
+        }
+        for (int slot = 0; slot < methods.keys.length; slot++) {
+            if (methods.keys[slot] != null) {
+                versions[methods.owners[slot]].methods.put(methods.keys[slot], methods.info(slot));
+            }
+        }
         return map;
     }
 
-    static class Parser {
+    // open addressing with linear probing, at most half of the slots are used
+    private static class Table {
+
+        static final int NO_OWNER = -1;
+
+        final String[] keys;
+        final int[] owners;
+        final int[] since;
+        final int[] deprecated;
+
+        private final int mask;
+
+        Table(int size) {
+            int capacity = 2;
+            while (capacity < size * 2) {
+                capacity <<= 1;
+            }
+            keys = new String[capacity];
+            owners = new int[capacity];
+            since = new int[capacity];
+            deprecated = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        // returns slot
+        int put(@Nonnull String key, int owner, int since, int deprecated) {
+            int slot = slot(key.hashCode(), owner);
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            owners[slot] = owner;
+            this.since[slot] = since;
+            this.deprecated[slot] = deprecated;
+            return slot;
+        }
+
+        // returns slot or -1
+        int find(@Nonnull CharSequence key, int hash, int owner) {
+            int slot = slot(hash, owner);
+            String value;
+            while ((value = keys[slot]) != null) {
+                if (owners[slot] == owner
+                        && value.hashCode() == hash
+                        && value.contentEquals(key)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        @Nullable
+        ApiInfo info(int slot) {
+            return slot < 0
+                    ? null
+                    : ApiInfo.of(since[slot], deprecated[slot]);
+        }
+
+        private int slot(int hash, int owner) {
+            int h = hash ^ (owner * 0x9E3779B9);
+            h ^= h >>> 16;
+            return h & mask;
+        }
+
+        // same as String#hashCode
+        static int hash(@Nonnull CharSequence value) {
+            int hash = 0;
+            for (int i = 0, length = value.length(); i < length; i++) {
+                hash = 31 * hash + value.charAt(i);
+            }
+            return hash;
+        }
+    }
+
+    static abstract class Parser {
+
+        static final String CLASS = "class";
+        static final String FIELD = "field";
+        static final String METHOD = "method";
 
-        private static final String NAME = "name";
-        private static final String SINCE = "since";
-        private static final String DEPRECATED = "deprecated";
+        static final String NAME = "name";
+        static final String SINCE = "since";
+        static final String DEPRECATED = "deprecated";
 
-        private final File file;
+        final File file;
 
-        private Parser(@Nonnull File file) {
+        Parser(@Nonnull File file) {
             this.file = file;
         }
 
         @Nonnull
+        abstract Map<String, TypeVersion> parse();
+
+        static boolean isEmpty(@Nonnull TypeVersion version) {
+            return !version.hasSince()
+                    && !version.hasDeprecated()
+                    && version.fields.isEmpty()
+                    && version.methods.isEmpty();
+        }
+
+        @Nullable
+        static ApiInfo apiInfo(@Nullable String sinceValue, @Nullable String deprecatedValue) {
+
+            final ApiInfo apiInfo;
+
+            final int since = apiVersion(sinceValue);
+            final int deprecated = apiVersion(deprecatedValue);
+
+            if (since == ApiInfo.NONE
+                    && deprecated == ApiInfo.NONE) {
+                apiInfo = null;
+            } else {
+                apiInfo = ApiInfo.of(since, deprecated);
+            }
+
+            return apiInfo;
+        }
+
+        static int apiVersion(@Nullable String value) {
+            if (value == null || value.isEmpty()) {
+                return ApiInfo.NONE;
+            }
+
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                //noinspection CallToPrintStackTrace
+                e.printStackTrace();
+            }
+
+            return ApiInfo.NONE;
+        }
+
+        // same (normalized) signatures are repeated for many types, instances are shared
+        private final Map<String, String> signatures = new HashMap<>();
+
+        @Nonnull
+        String signature(@Nonnull String descriptor) {
+            String signature = signatures.get(descriptor);
+            if (signature == null) {
+                final String normalized = normalizeMethodSignature(descriptor);
+                signature = signatures.get(normalized);
+                if (signature == null) {
+                    // normalization does not change already normalized signature
+                    signature = normalized;
+                    signatures.put(normalized, normalized);
+                }
+                signatures.put(descriptor, signature);
+            }
+            return signature;
+        }
+
+        /**
+         * Cuts off all package info from reference types (and possibly parent class):
+         * `LBuilder;` instead of `Landroid/app/AlertDialog$Builder;`, so we do not have to
+         * resolve types in source code.
+         * <p>
+         * Single pass equivalent of replacing `L\w+[/\w]+[/$](\w+);` with `L$1;`: a reference
+         * type is an `L` followed by word characters, `/` and `$`, terminated by `;`. Its simple
+         * name follows the last `/` or `$`, which must be preceded by at least 2 characters
+         * (first is a word character). `$` is allowed only as the last separator
+         */
+        @Nonnull
+        static String normalizeMethodSignature(@Nonnull String name) {
+
+            if (name.indexOf(';') < 0) {
+                return name;
+            }
+
+            final int length = name.length();
+
+            StringBuilder builder = null;
+
+            // copied up to
+            int index = 0;
+
+            int i = 0;
+
+            while (i < length) {
+
+                if (name.charAt(i) != 'L') {
+                    i += 1;
+                    continue;
+                }
+
+                int end = i + 1;
+                int separator = -1;
+                int dollars = 0;
+
+                while (end < length) {
+                    final char c = name.charAt(end);
+                    if (c == '/') {
+                        separator = end;
+                    } else if (c == '$') {
+                        separator = end;
+                        dollars += 1;
+                    } else if (!isWordCharacter(c)) {
+                        break;
+                    }
+                    end += 1;
+                }
+
+                final boolean matches = end < length
+                        && name.charAt(end) == ';'
+                        // simple name is not empty
+                        && separator > i && separator < end - 1
+                        // at least 2 characters before separator, first is a word character
+                        && separator - (i + 1) >= 2 && isWordCharacter(name.charAt(i + 1))
+                        // `$` only as the separator
+                        && (dollars == 0 || (dollars == 1 && name.charAt(separator) == '$'));
+
+                if (!matches) {
+                    i += 1;
+                    continue;
+                }
+
+                if (builder == null) {
+                    builder = new StringBuilder(length);
+                }
+
+                builder.append(name, index, i)
+                        .append('L')
+                        .append(name, separator + 1, end)
+                        .append(';');
+
+                index = i = end + 1;
+            }
+
+            if (builder == null) {
+                return name;
+            }
+
+            return builder.append(name, index, length).toString();
+        }
+
+        private static boolean isWordCharacter(char c) {
+            return (c >= 'a' && c <= 'z')
+                    || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9')
+                    || c == '_';
+        }
+    }
+
+    // original implementation, loads whole document in memory,
+    //  kept in order to compare with the streaming one
+    static class DomParser extends Parser {
+
+        DomParser(@Nonnull File file) {
+            super(file);
+        }
+
+        @Nonnull
+        @Override
         Map<String, TypeVersion> parse() {
 
             final Map<String, TypeVersion> map = new HashMap<>();
@@ -107,7 +458,7 @@ class ApiInfoStoreImpl extends ApiInfoStore {
                 final DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
                 final Document document = builder.parse(file);
                 document.getDocumentElement().normalize();
-                return document.getElementsByTagName("class");
+                return document.getElementsByTagName(CLASS);
             } catch (Throwable t) {
                 throw new RuntimeException(t);
             }
@@ -115,7 +466,7 @@ class ApiInfoStoreImpl extends ApiInfoStore {
 
         private static void fields(@Nonnull TypeVersion version, @Nonnull Element parent) {
 
-            final NodeList list = parent.getElementsByTagName("field");
+            final NodeList list = parent.getElementsByTagName(FIELD);
 
             Node node;
             Element element;
@@ -125,7 +476,7 @@ class ApiInfoStoreImpl extends ApiInfoStore {
                 node = list.item(i);
                 if (Node.ELEMENT_NODE == node.getNodeType()) {
                     element = (Element) node;
-                    apiInfo = apiInfo(element);
+                    apiInfo = apiInfo(element.getAttribute(SINCE), element.getAttribute(DEPRECATED));
                     if (apiInfo != null) {
                         version.fields.put(element.getAttribute(NAME), apiInfo);
                     }
@@ -133,9 +484,9 @@ class ApiInfoStoreImpl extends ApiInfoStore {
             }
         }
 
-        private static void methods(@Nonnull TypeVersion version, @Nonnull Element parent) {
+        private void methods(@Nonnull TypeVersion version, @Nonnull Element parent) {
 
-            final NodeList list = parent.getElementsByTagName("method");
+            final NodeList list = parent.getElementsByTagName(METHOD);
 
             Node node;
             Element element;
@@ -145,91 +496,97 @@ class ApiInfoStoreImpl extends ApiInfoStore {
                 node = list.item(i);
                 if (Node.ELEMENT_NODE == node.getNodeType()) {
                     element = (Element) node;
-                    apiInfo = apiInfo(element);
+                    apiInfo = apiInfo(element.getAttribute(SINCE), element.getAttribute(DEPRECATED));
                     if (apiInfo != null) {
-                        version.methods.put(normalizeMethodSignature(element.getAttribute(NAME)), apiInfo);
+                        version.methods.put(signature(element.getAttribute(NAME)), apiInfo);
                     }
                 }
             }
         }
+    }
 
-        private static boolean isEmpty(@Nonnull TypeVersion version) {
-            return version.since == null
-                    && version.deprecated == null
-                    && version.fields.isEmpty()
-                    && version.methods.isEmpty();
-        }
-
-        @Nullable
-        private static ApiInfo apiInfo(@Nonnull Element element) {
-
-            final ApiInfo apiInfo;
-
-            final Integer since = apiVersion(element.getAttribute(SINCE));
-            final Integer deprecated = apiVersion(element.getAttribute(DEPRECATED));
-
-            if (since == null
-                    && deprecated == null) {
-                apiInfo = null;
-            } else {
-                apiInfo = new ApiInfo(since, deprecated);
-            }
-
-            return apiInfo;
-        }
-
-        @Nullable
-        private static Integer apiVersion(@Nullable String value) {
-            if (value == null || value.isEmpty()) {
-                return null;
-            }
-
-            try {
-                return Integer.parseInt(value);
-            } catch (NumberFormatException e) {
-                //noinspection CallToPrintStackTrace
-                e.printStackTrace();
-            }
+    // single forward pass over the document, does not keep anything except parsed values
+    static class StreamParser extends Parser {
 
-            return null;
+        StreamParser(@Nonnull File file) {
+            super(file);
         }
 
-        private static final Pattern RE = Pattern.compile("L\\w+[/\\w]+[/$](\\w+);");
-
         @Nonnull
-        static String normalizeMethodSignature(@Nonnull String name) {
-
-            // we will cut off all package info from reference types (and possibly parent class)
-            // LBuilder; instead of Landroid/app/AlertDialog$Builder; so we do not have to resolve types in source code..
-
-            final String out;
+        @Override
+        Map<String, TypeVersion> parse() {
 
-            int index = name.indexOf(';');
-            if (index < 0) {
-                out = name;
-            } else {
+            final Map<String, TypeVersion> map = new HashMap<>();
 
-                final Matcher matcher = RE.matcher(name);
-                final StringBuilder builder = new StringBuilder();
-                index = 0;
-                while (matcher.find()) {
-                    if (matcher.start() > index) {
-                        builder.append(name, index, matcher.start());
+            final XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+            try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+
+                final XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+                try {
+
+                    String name = null;
+                    TypeVersion version = null;
+                    String tag;
+                    ApiInfo apiInfo;
+
+                    while (reader.hasNext()) {
+
+                        switch (reader.next()) {
+
+                            case XMLStreamConstants.START_ELEMENT:
+                                tag = reader.getLocalName();
+                                if (CLASS.equals(tag)) {
+                                    name = attribute(reader, NAME);
+                                    version = new TypeVersion(
+                                            apiVersion(attribute(reader, SINCE)),
+                                            apiVersion(attribute(reader, DEPRECATED))
+                                    );
+                                } else if (version != null) {
+                                    if (FIELD.equals(tag)) {
+                                        apiInfo = apiInfo(attribute(reader, SINCE), attribute(reader, DEPRECATED));
+                                        if (apiInfo != null) {
+                                            version.fields.put(attribute(reader, NAME), apiInfo);
+                                        }
+                                    } else if (METHOD.equals(tag)) {
+                                        apiInfo = apiInfo(attribute(reader, SINCE), attribute(reader, DEPRECATED));
+                                        if (apiInfo != null) {
+                                            version.methods.put(signature(attribute(reader, NAME)), apiInfo);
+                                        }
+                                    }
+                                }
+                                break;
+
+                            case XMLStreamConstants.END_ELEMENT:
+                                if (version != null
+                                        && CLASS.equals(reader.getLocalName())) {
+                                    if (!isEmpty(version)) {
+                                        map.put(name, version);
+                                    }
+                                    name = null;
+                                    version = null;
+                                }
+                                break;
+                        }
                     }
-                    index = matcher.end();
-                    builder.append('L')
-                            .append(matcher.group(1))
-                            .append(';');
-                }
-                if (index < name.length()) {
-                    // the rest
-                    builder.append(name.substring(index));
+                } finally {
+                    reader.close();
                 }
 
-                out = builder.toString();
+            } catch (IOException | XMLStreamException e) {
+                throw new RuntimeException(e);
             }
 
-            return out;
+            return map;
+        }
+
+        // DOM returns empty string for missing attributes, keep the same
+        @Nonnull
+        private static String attribute(@Nonnull XMLStreamReader reader, @Nonnull String name) {
+            final String value = reader.getAttributeValue(null, name);
+            return value != null ? value : "";
         }
     }
 }
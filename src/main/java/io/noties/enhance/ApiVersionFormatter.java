@@ -15,9 +15,28 @@ public abstract class ApiVersionFormatter {
 
     private static class Impl extends ApiVersionFormatter {
 
+        // covers all known SDK versions
+        private static final int CACHED = 128;
+
+        // the same versions are formatted for every member, racy initialization is harmless
+        private final String[] cache = new String[CACHED];
+
         @Nonnull
         @Override
         public String format(int version) {
+            if (version < 0 || version >= CACHED) {
+                return create(version);
+            }
+            String value = cache[version];
+            if (value == null) {
+                value = create(version);
+                cache[version] = value;
+            }
+            return value;
+        }
+
+        @Nonnull
+        private static String create(int version) {
             final Api api = Api.of(version);
             if (api != null) {
                 // for example - @since 5.1 Lollipop (22)
@@ -0,0 +1,142 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index of `api-versions.xml`: types and members that were added or deprecated in an
+ * SDK version, sorted by name. Built with a single pass over a store, so emitting changes of
+ * a version takes time proportional to their number
+ *
+ * @see ApiInfoStore#versionIndex()
+ */
+abstract class ApiVersionIndex {
+
+    @Nonnull
+    static ApiVersionIndex create(@Nonnull Map<String, ApiInfoStore.TypeVersion> info) {
+        return new Impl(info);
+    }
+
+    /**
+     * A type that has been added or deprecated in a version (check its {@link #info}), or that
+     * has members that have been
+     */
+    static class TypeChanges {
+
+        final String type;
+        final ApiInfo info;
+
+        final List<Member> fields = new ArrayList<>(0);
+        final List<Member> methods = new ArrayList<>(0);
+
+        TypeChanges(@Nonnull String type, @Nonnull ApiInfo info) {
+            this.type = type;
+            this.info = info;
+        }
+    }
+
+    static class Member {
+
+        final String name;
+        final ApiInfo info;
+
+        Member(@Nonnull String name, @Nonnull ApiInfo info) {
+            this.name = name;
+            this.info = info;
+        }
+    }
+
+    /**
+     * @return changes of the version sorted by type name, empty if there are none
+     */
+    @Nonnull
+    abstract List<TypeChanges> changes(int version);
+
+
+    private static class Impl extends ApiVersionIndex {
+
+        private static final int[] NO_VERSIONS = new int[0];
+
+        private static final Comparator<Member> BY_NAME = Comparator.comparing(member -> member.name);
+
+        private final Map<Integer, List<TypeChanges>> versions;
+
+        Impl(@Nonnull Map<String, ApiInfoStore.TypeVersion> info) {
+
+            final Map<Integer, Map<String, TypeChanges>> map = new HashMap<>();
+
+            for (Map.Entry<String, ApiInfoStore.TypeVersion> entry : info.entrySet()) {
+
+                final String type = entry.getKey();
+                final ApiInfoStore.TypeVersion typeVersion = entry.getValue();
+
+                for (int version : versions(typeVersion)) {
+                    changes(map, version, type, typeVersion);
+                }
+
+                for (Map.Entry<String, ApiInfo> field : typeVersion.fields.entrySet()) {
+                    for (int version : versions(field.getValue())) {
+                        changes(map, version, type, typeVersion).fields.add(new Member(field.getKey(), field.getValue()));
+                    }
+                }
+
+                for (Map.Entry<String, ApiInfo> method : typeVersion.methods.entrySet()) {
+                    for (int version : versions(method.getValue())) {
+                        changes(map, version, type, typeVersion).methods.add(new Member(method.getKey(), method.getValue()));
+                    }
+                }
+            }
+
+            // sorted once, as a version can be requested multiple times (daemon keeps stores)
+            this.versions = new HashMap<>(map.size());
+            for (Map.Entry<Integer, Map<String, TypeChanges>> entry : map.entrySet()) {
+                final List<TypeChanges> list = new ArrayList<>(entry.getValue().values());
+                list.sort(Comparator.comparing(changes -> changes.type));
+                for (TypeChanges changes : list) {
+                    changes.fields.sort(BY_NAME);
+                    changes.methods.sort(BY_NAME);
+                }
+                versions.put(entry.getKey(), list);
+            }
+        }
+
+        @Nonnull
+        @Override
+        List<TypeChanges> changes(int version) {
+            final List<TypeChanges> list = versions.get(version);
+            return list != null
+                    ? Collections.unmodifiableList(list)
+                    : Collections.emptyList();
+        }
+
+        @Nonnull
+        private static TypeChanges changes(
+                @Nonnull Map<Integer, Map<String, TypeChanges>> map,
+                int version,
+                @Nonnull String type,
+                @Nonnull ApiInfo info) {
+            return map.computeIfAbsent(version, key -> new HashMap<>())
+                    .computeIfAbsent(type, key -> new TypeChanges(type, info));
+        }
+
+        // versions an entry is listed in (both, if it has been added and deprecated in different versions)
+        @Nonnull
+        private static int[] versions(@Nonnull ApiInfo info) {
+            final boolean since = info.since != ApiInfo.NONE;
+            final boolean deprecated = info.deprecated != ApiInfo.NONE && info.deprecated != info.since;
+            if (since && deprecated) {
+                return new int[]{info.since, info.deprecated};
+            } else if (since) {
+                return new int[]{info.since};
+            } else if (deprecated) {
+                return new int[]{info.deprecated};
+            }
+            return NO_VERSIONS;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static io.noties.enhance.Log.log;
+import static io.noties.enhance.Log.warn;
+
+/**
+ * Content-addressed storage of backed up files. Each distinct file is stored once (named after
+ * its SHA-256), a backup of SDK sources is a tree of hard links to stored files. If hard links
+ * are not supported files are copied.
+ * <p>
+ * Stored files are read-only: backups share them and output files can be hard-linked to them
+ * (see `-link`), so an in place edit of any of these must not change the stored contents.
+ * <p>
+ * Stored files are never removed, the store only grows. It can be deleted as a whole at any time
+ * (when no backup is being created): backups keep their contents, files stored afterwards are not
+ * shared with them.
+ */
+public abstract class BackupStore {
+
+    @Nonnull
+    public static BackupStore create(@Nonnull File folder) {
+        return new Impl(folder);
+    }
+
+    /**
+     * Creates a backup of the `source` folder at the `destination`
+     *
+     * @param pool pool to hash and store files in parallel with, it is not shut down. `null` to
+     *             process files sequentially on the calling thread
+     */
+    public abstract void backup(@Nonnull File source, @Nonnull File destination, @Nullable ForkJoinPool pool) throws IOException;
+
+
+    private static class Impl extends BackupStore {
+
+        private final File folder;
+
+        // can be disabled, if file system does not support hard links
+        private volatile boolean link = true;
+
+        Impl(@Nonnull File folder) {
+            this.folder = folder;
+        }
+
+        @Override
+        public void backup(@Nonnull File source, @Nonnull File destination, @Nullable ForkJoinPool pool) throws IOException {
+
+            if (!folder.exists() && !folder.mkdirs()) {
+                throw new IOException("Cannot create backup store folder: " + folder.getPath());
+            }
+
+            if (!FileTransfer.isSameFileStore(folder, destination)) {
+                link = false;
+            }
+
+            final List<Entry> files = new ArrayList<>();
+            collect(source, destination, files);
+
+            final AtomicInteger stored = new AtomicInteger();
+            final AtomicLong storedBytes = new AtomicLong();
+
+            final Consumer<Entry> action = entry -> {
+                try {
+                    final long length = entry.source.length();
+                    if (backup(entry.source, entry.destination)) {
+                        stored.incrementAndGet();
+                        storedBytes.addAndGet(length);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+
+            if (pool == null) {
+                try {
+                    files.forEach(action);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            } else {
+                try {
+                    pool.submit(() -> files.parallelStream().forEach(action)).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof UncheckedIOException) {
+                        throw ((UncheckedIOException) cause).getCause();
+                    }
+                    throw new IOException(cause);
+                }
+            }
+
+            log("[Enhance] backup files: %d, new in store: %d (%d KB), linked: %b",
+                    files.size(), stored.get(), storedBytes.get() / 1024, link);
+        }
+
+        // returns `true` if file was not in the store before
+        private boolean backup(@Nonnull File source, @Nonnull File destination) throws IOException {
+
+            if (!link) {
+                // storing makes no sense if files cannot be shared
+                FileTransfer.copy(source, destination);
+                return false;
+            }
+
+            final String hash = Hash.sha256(source);
+
+            // first 2 characters are used as a folder, so there are not too many files in a single one
+            final File folder = new File(this.folder, hash.substring(0, 2));
+            final File object = new File(folder, hash.substring(2));
+
+            boolean created = false;
+
+            if (!object.exists()) {
+
+                if (!folder.exists() && !folder.mkdirs() && !folder.exists()) {
+                    throw new IOException("Cannot create folder: " + folder.getPath());
+                }
+
+                // copy to a temporary file first, same content can be stored by a different thread.
+                //  Unlike a move (which replaces an existing file on POSIX), a link fails if the object
+                //  exists, so an object that is already linked from backups is never replaced
+                final Path temp = Files.createTempFile(folder.toPath(), hash.substring(2), ".tmp");
+                try {
+                    Files.copy(source.toPath(), temp, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                    Files.createLink(object.toPath(), temp);
+                    created = true;
+                } catch (FileAlreadyExistsException e) {
+                    // stored by a different thread
+                } catch (IOException | UnsupportedOperationException e) {
+                    link = false;
+                    warn("[Enhance] cannot create hard link, backup files would be copied: %s", e.getMessage());
+                    FileTransfer.copy(source, destination);
+                    return false;
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+
+            // also objects stored by a different thread or a previous run
+            if (object.canWrite() && !object.setReadOnly()) {
+                throw new IOException("Cannot make stored file read-only: " + object.getPath());
+            }
+
+            try {
+                FileTransfer.link(object, destination);
+            } catch (IOException | UnsupportedOperationException e) {
+                link = false;
+                warn("[Enhance] cannot create hard link, backup files would be copied: %s", e.getMessage());
+                FileTransfer.copy(object, destination);
+            }
+
+            return created;
+        }
+
+        private static void collect(
+                @Nonnull File source,
+                @Nonnull File destination,
+                @Nonnull List<Entry> files
+        ) throws IOException {
+
+            final File[] list = source.listFiles();
+            if (list == null) {
+                return;
+            }
+
+            for (File file : list) {
+                final File target = new File(destination, file.getName());
+                if (file.isDirectory()) {
+                    if (!target.exists() && !target.mkdirs()) {
+                        throw new IOException("Cannot create folder: " + target.getPath());
+                    }
+                    collect(file, target, files);
+                } else {
+                    files.add(new Entry(file, target));
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+
+        final File source;
+        final File destination;
+
+        Entry(@Nonnull File source, @Nonnull File destination) {
+            this.source = source;
+            this.destination = destination;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package io.noties.enhance;
 
+import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.body.CallableDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.Parameter;
@@ -14,119 +15,119 @@ public abstract class ByteCodeSignature {
 
     @Nonnull
     public static String create(@Nonnull CallableDeclaration<?> declaration) {
-        return new Creator(declaration).get();
+        final StringBuilder builder = new StringBuilder();
+        append(builder, declaration);
+        return builder.toString();
     }
 
-    private ByteCodeSignature() {
+    /**
+     * Appends signature to the builder, so it can be reused for lookups without creating a String
+     */
+    public static void append(@Nonnull StringBuilder builder, @Nonnull CallableDeclaration<?> declaration) {
+        name(builder, declaration);
+        parameters(builder, declaration);
+        returnType(builder, declaration);
     }
 
-    private static class Creator {
-
-        private final CallableDeclaration<?> declaration;
-
-        private final StringBuilder builder = new StringBuilder();
+    private ByteCodeSignature() {
+    }
 
-        Creator(@Nonnull CallableDeclaration<?> declaration) {
-            this.declaration = declaration;
-            name();
-            parameters();
-            returnType();
+    private static void name(@Nonnull StringBuilder builder, @Nonnull CallableDeclaration<?> declaration) {
+        if (declaration.isConstructorDeclaration()) {
+            builder.append("<init>");
+        } else {
+            builder.append(declaration.getName().getIdentifier());
         }
+    }
 
-        @Nonnull
-        String get() {
-            return builder.toString();
+    private static void parameters(@Nonnull StringBuilder builder, @Nonnull CallableDeclaration<?> declaration) {
+        builder.append('(');
+        final NodeList<Parameter> parameters = declaration.getParameters();
+        for (int i = 0, size = parameters.size(); i < size; i++) {
+            type(builder, parameters.get(i).getType());
         }
+        builder.append(')');
+    }
 
-        private void name() {
-            if (declaration.isConstructorDeclaration()) {
-                builder.append("<init>");
-            } else {
-                builder.append(declaration.getNameAsString());
-            }
+    private static void returnType(@Nonnull StringBuilder builder, @Nonnull CallableDeclaration<?> declaration) {
+        if (declaration.isConstructorDeclaration()) {
+            builder.append('V');
+        } else {
+            type(builder, ((MethodDeclaration) declaration).getType());
         }
+    }
 
-        private void parameters() {
-            builder.append('(');
-            for (Parameter parameter : declaration.getParameters()) {
-                type(parameter.getType());
-            }
-            builder.append(')');
-        }
+    private static void type(@Nonnull StringBuilder builder, @Nonnull Type type) {
 
-        private void returnType() {
-            if (declaration.isConstructorDeclaration()) {
-                builder.append('V');
-            } else {
-                type(((MethodDeclaration) declaration).getType());
-            }
+        while (type.isArrayType()) {
+            builder.append('[');
+            type = ((ArrayType) type).getComponentType();
         }
 
-        private void type(@Nonnull Type type) {
-
-            while (type.isArrayType()) {
-                builder.append('[');
-                type = ((ArrayType) type).getComponentType();
-            }
-
-            if (type.isVoidType()) {
-                builder.append('V');
-            } else if (type.isPrimitiveType()) {
-                primitiveType((PrimitiveType) type);
-            } else {
-                classOrInterfaceType((ClassOrInterfaceType) type);
-            }
+        if (type.isVoidType()) {
+            builder.append('V');
+        } else if (type.isPrimitiveType()) {
+            primitiveType(builder, (PrimitiveType) type);
+        } else {
+            classOrInterfaceType(builder, (ClassOrInterfaceType) type);
         }
+    }
 
-        private void primitiveType(@Nonnull PrimitiveType primitiveType) {
-            switch (primitiveType.getType()) {
+    private static void primitiveType(@Nonnull StringBuilder builder, @Nonnull PrimitiveType primitiveType) {
+        switch (primitiveType.getType()) {
 
-                case BOOLEAN:
-                    builder.append('Z');
-                    break;
+            case BOOLEAN:
+                builder.append('Z');
+                break;
 
-                case CHAR:
-                    builder.append('C');
-                    break;
+            case CHAR:
+                builder.append('C');
+                break;
 
-                case BYTE:
-                    builder.append('B');
-                    break;
+            case BYTE:
+                builder.append('B');
+                break;
 
-                case SHORT:
-                    builder.append('S');
-                    break;
+            case SHORT:
+                builder.append('S');
+                break;
 
-                case INT:
-                    builder.append('I');
-                    break;
+            case INT:
+                builder.append('I');
+                break;
 
-                case LONG:
-                    builder.append('J');
-                    break;
+            case LONG:
+                builder.append('J');
+                break;
 
-                case FLOAT:
-                    builder.append('F');
-                    break;
+            case FLOAT:
+                builder.append('F');
+                break;
 
-                case DOUBLE:
-                    builder.append('D');
-                    break;
-            }
+            case DOUBLE:
+                builder.append('D');
+                break;
         }
+    }
 
-        // NB simplified signature here (no package info nor parent)
-        private void classOrInterfaceType(@Nonnull ClassOrInterfaceType classOrInterfaceType) {
-            builder.append('L');
+    // NB simplified signature here (no package info nor parent)
+    private static void classOrInterfaceType(@Nonnull StringBuilder builder, @Nonnull ClassOrInterfaceType classOrInterfaceType) {
+        builder.append('L');
 
+        if (classOrInterfaceType.getTypeArguments().isPresent()) {
+            // type arguments are kept as is (such a signature never matches), rare enough
+            //  to obtain the String representation
             String value = classOrInterfaceType.asString();
-
             final int index = value.lastIndexOf('.');
             if (index > -1) {
                 value = value.substring(index + 1);
             }
             builder.append(value);
-            builder.append(';');
+        } else {
+            // simple name without scope (would be after the last `.`)
+            builder.append(classOrInterfaceType.getName().getIdentifier());
         }
+
+        builder.append(';');
     }
 }
@@ -0,0 +1,438 @@
+package io.noties.enhance;
+
+import io.noties.enhance.options.EnhanceOptions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static io.noties.enhance.Log.error;
+import static io.noties.enhance.Log.log;
+import static io.noties.enhance.Log.warn;
+
+/**
+ * Resident process that runs jobs submitted over a loopback socket. Jobs are run one at a time
+ * (logging is process-wide), parsed `api-versions.xml` and worker threads (with their parsers and
+ * formatters) are kept between jobs, pipeline workers run on kept threads too.
+ * <p>
+ * A client sends the token (generated by the daemon at start and stored in a file that only its
+ * owner can read), the number of arguments and the arguments. Daemon responds with lines:
+ * `L` + logged message, `S` + status line (removed if empty), `O` + output (diff) and
+ * finally `X` + exit code of the job
+ */
+abstract class Daemon {
+
+    private static final String REMOTE = "-remote";
+
+    // jobs are accepted one at a time, a client that does not send its request is dropped
+    private static final int REQUEST_TIMEOUT = 10_000;
+
+    // far more than any job has, a larger count is not a valid request
+    private static final int MAX_ARGS = 1024;
+
+    /**
+     * @param token file to store the token in, clients read it to submit jobs
+     */
+    @Nonnull
+    static Daemon create(int port, @Nonnull File token) {
+        return create(port, token, REQUEST_TIMEOUT);
+    }
+
+    // package-private for tests
+    @Nonnull
+    static Daemon create(int port, @Nonnull File token, int requestTimeout) {
+        return new Impl(port, token, requestTimeout);
+    }
+
+    /**
+     * Submits a job (see {@link EnhanceOptions#remoteArgs()}) to a running daemon, its output is logged as it arrives
+     *
+     * @param token file with the token of the daemon
+     * @return exit code of the job
+     */
+    static int submit(int port, @Nonnull File token, @Nonnull String[] args) {
+
+        final String value;
+        try {
+            value = new String(Files.readAllBytes(token.toPath()), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            error("[Enhance] cannot read the daemon token at `%s`, start the daemon with `-daemon`", token.getPath());
+            return 1;
+        }
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF(value);
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                final String text = line.substring(1);
+
+                switch (line.charAt(0)) {
+
+                    case 'L':
+                        log(text);
+                        break;
+
+                    case 'S':
+                        Log.status(text.isEmpty() ? null : text);
+                        break;
+
+                    case 'O':
+                        Log.flush();
+                        System.out.println(text);
+                        break;
+
+                    case 'X':
+                        Log.status(null);
+                        return Integer.parseInt(text);
+
+                    default:
+                        warn("[Enhance] unexpected daemon response: %s", line);
+                }
+            }
+
+            Log.status(null);
+            error("[Enhance] daemon has closed the connection before the job has finished");
+            return 1;
+
+        } catch (ConnectException e) {
+            error("[Enhance] cannot connect to the daemon at port %d, start it with `-daemon`", port);
+            return 1;
+        } catch (IOException e) {
+            // daemon closes the connection of a rejected job
+            Log.status(null);
+            error("[Enhance] daemon connection has failed: %s", e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Accepts jobs until the process is terminated
+     */
+    abstract void run();
+
+    /**
+     * @return store previously loaded from the file, `null` if there is none or the file has changed since
+     */
+    @Nullable
+    abstract ApiInfoStore store(@Nonnull File apiVersions);
+
+    abstract void store(@Nonnull File apiVersions, @Nonnull ApiInfoStore store);
+
+    /**
+     * @return pool with the specified number of threads, it is shared by jobs and must not be shut down
+     */
+    @Nonnull
+    abstract ForkJoinPool pool(int threads);
+
+    /**
+     * @return executor that runs each task on an idle thread or a new one, threads are kept
+     * between jobs. It is shared by jobs and must not be shut down
+     */
+    @Nonnull
+    abstract Executor executor();
+
+
+    private static class Impl extends Daemon {
+
+        private final int port;
+        private final File tokenFile;
+        private final int requestTimeout;
+
+        // generated at start
+        private byte[] token;
+
+        private final Map<String, LoadedStore> stores = new ConcurrentHashMap<>();
+
+        private final Map<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+        // idle threads never expire
+        private final Executor executor = new ThreadPoolExecutor(
+                0, Integer.MAX_VALUE, Long.MAX_VALUE, TimeUnit.NANOSECONDS, new SynchronousQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "enhance-daemon-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Impl(int port, @Nonnull File tokenFile, int requestTimeout) {
+            this.port = port;
+            this.tokenFile = tokenFile;
+            this.requestTimeout = requestTimeout;
+        }
+
+        @Override
+        void run() {
+
+            final ServerSocket server;
+            try {
+                server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot listen on port: " + port, e);
+            }
+
+            try {
+                token = createToken(tokenFile);
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot create daemon token file: " + tokenFile.getPath(), e);
+            }
+
+            // a stale token would not be accepted anyway
+            Runtime.getRuntime().addShutdownHook(new Thread(tokenFile::delete));
+
+            log("[Enhance] version: %s", EnhanceVersion.NAME);
+            log("[Enhance] daemon is listening on %s:%d", server.getInetAddress().getHostAddress(), port);
+
+            //noinspection InfiniteLoopStatement
+            while (true) {
+                try (Socket socket = server.accept()) {
+                    handle(socket);
+                } catch (IOException e) {
+                    warn("[Enhance] daemon job connection failed: %s", e.getMessage());
+                }
+            }
+        }
+
+        @Nullable
+        @Override
+        ApiInfoStore store(@Nonnull File apiVersions) {
+            final LoadedStore loaded = stores.get(apiVersions.getAbsolutePath());
+            return loaded != null && loaded.isFor(apiVersions)
+                    ? loaded.store
+                    : null;
+        }
+
+        @Override
+        void store(@Nonnull File apiVersions, @Nonnull ApiInfoStore store) {
+            stores.put(apiVersions.getAbsolutePath(), new LoadedStore(apiVersions, store));
+        }
+
+        @Nonnull
+        @Override
+        ForkJoinPool pool(int threads) {
+            // async mode makes workers process own queue in FIFO order, which keeps the size ordering
+            return pools.computeIfAbsent(threads, key ->
+                    new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true));
+        }
+
+        @Nonnull
+        @Override
+        Executor executor() {
+            return executor;
+        }
+
+        private void handle(@Nonnull Socket socket) throws IOException {
+
+            // a read that times out throws, the connection is closed then
+            socket.setSoTimeout(requestTimeout);
+
+            final DataInputStream in = new DataInputStream(socket.getInputStream());
+            final Connection connection = new Connection(socket.getOutputStream());
+
+            // checked before anything else is read, the rest of the request of
+            //  a rejected client is discarded with the connection
+            final byte[] token = in.readUTF().getBytes(StandardCharsets.UTF_8);
+            if (!MessageDigest.isEqual(this.token, token)) {
+                warn("[Enhance] daemon has rejected a job with invalid token");
+                reject(connection, "invalid token");
+                return;
+            }
+
+            final int count = in.readInt();
+            if (count < 0 || count > MAX_ARGS) {
+                warn("[Enhance] daemon has rejected a job with %d arguments", count);
+                reject(connection, "invalid number of arguments: " + count);
+                return;
+            }
+
+            final List<String> args = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final String arg = in.readUTF();
+                if (!REMOTE.equals(arg)) {
+                    args.add(arg);
+                }
+            }
+
+            log("[Enhance] daemon job: %s", args);
+
+            // messages logged before the job are not sent
+            Log.flush();
+            Log.listener(connection);
+
+            int code = 0;
+            try (PrintStream out = new PrintStream(connection.output(), true, StandardCharsets.UTF_8.name())) {
+                Enhance.run(EnhanceOptions.create(args.toArray(new String[0])), out, this);
+            } catch (Throwable t) {
+                final StringWriter writer = new StringWriter();
+                t.printStackTrace(new PrintWriter(writer));
+                error("[Enhance] daemon job has failed: %s", writer);
+                code = 1;
+            } finally {
+                Log.flush();
+                Log.listener(null);
+                Log.level(Log.Level.INFO);
+            }
+
+            connection.send('X', String.valueOf(code));
+        }
+
+        private static void reject(@Nonnull Connection connection, @Nonnull String reason) {
+            connection.send('L', "[Enhance] daemon has rejected the job: " + reason);
+            connection.send('X', "1");
+        }
+    }
+
+    // random token in a file that only the owner can read and write
+    @Nonnull
+    private static byte[] createToken(@Nonnull File file) throws IOException {
+
+        final byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        final String token = Hash.hex(bytes);
+
+        final File folder = file.getParentFile();
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Cannot create folder: " + folder.getPath());
+        }
+
+        // created with permissions set, so it is never readable by others
+        final Path path = file.toPath();
+        Files.deleteIfExists(path);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(path);
+            //noinspection ResultOfMethodCallIgnored
+            file.setReadable(false, false);
+            //noinspection ResultOfMethodCallIgnored
+            file.setReadable(true, true);
+        }
+        Files.write(path, token.getBytes(StandardCharsets.UTF_8));
+
+        return token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class LoadedStore {
+
+        final long length;
+        final long lastModified;
+        final ApiInfoStore store;
+
+        LoadedStore(@Nonnull File file, @Nonnull ApiInfoStore store) {
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.store = store;
+        }
+
+        boolean isFor(@Nonnull File file) {
+            return length == file.length()
+                    && lastModified == file.lastModified();
+        }
+    }
+
+    // sends log messages, status and output to the client, a closed connection is ignored
+    //  (job continues)
+    private static class Connection implements Log.Listener {
+
+        private final Writer writer;
+
+        private boolean closed;
+
+        Connection(@Nonnull OutputStream stream) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void message(@Nonnull String message) {
+            send('L', message);
+        }
+
+        @Override
+        public void status(@Nullable String status) {
+            send('S', status != null ? status : "");
+        }
+
+        // output split by lines
+        @Nonnull
+        OutputStream output() {
+            return new OutputStream() {
+
+                private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+                @Override
+                public void write(int b) {
+                    if (b == '\n') {
+                        send('O', new String(line.toByteArray(), StandardCharsets.UTF_8));
+                        line.reset();
+                    } else {
+                        line.write(b);
+                    }
+                }
+            };
+        }
+
+        synchronized void send(char type, @Nonnull String text) {
+            if (closed) {
+                return;
+            }
+            try {
+                // each line is sent separately, a message can contain several
+                for (String line : text.split("\r?\n", -1)) {
+                    writer.write(type);
+                    writer.write(line);
+                    writer.write('\n');
+                }
+                writer.flush();
+            } catch (IOException e) {
+                closed = true;
+            }
+        }
+    }
+}
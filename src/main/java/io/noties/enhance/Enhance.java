@@ -4,139 +4,486 @@ import io.noties.enhance.options.EnhanceOptions;
 import org.apache.commons.io.FileUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static io.noties.enhance.Log.log;
+import static io.noties.enhance.Log.warn;
+import static io.noties.enhance.Stats.printDiff;
 import static io.noties.enhance.Stats.printStatsFor;
 
 public class Enhance {
 
     private static final String APP_FOLDER = ".enhance-backup";
+    private static final String CACHE_FOLDER = "cache";
+    private static final String OBJECTS_FOLDER = "objects";
+    private static final String MANIFEST_EXTENSION = ".manifest";
 
     public static void main(String[] args) {
 
+        final EnhanceOptions options = EnhanceOptions.create(args);
+
+        if (options.daemon()) {
+            Daemon.create(options.port(), daemonToken(options.port())).run();
+            return;
+        }
+
+        if (options.compare() == null && !confirmUnknownSdks(options)) {
+            return;
+        }
+
+        if (options.remote()) {
+            final int code = Daemon.submit(options.port(), daemonToken(options.port()), options.remoteArgs());
+            Log.flush();
+            if (code != 0) {
+                System.exit(code);
+            }
+            return;
+        }
+
+        run(options, System.out, null);
+    }
+
+    /**
+     * Processes (or emits diff of) all specified SDK versions
+     *
+     * @param out    stream to print diff to
+     * @param daemon keeps loaded `api-versions.xml` and worker threads between runs, `null` if
+     *               nothing should outlive this run
+     */
+    static void run(@Nonnull EnhanceOptions options, @Nonnull PrintStream out, @Nullable Daemon daemon) {
+
         final ApiVersionFormatter apiVersionFormatter = ApiVersionFormatter.create();
 
+        if (options.quiet()) {
+            Log.level(Log.Level.WARN);
+        } else if (options.verbose()) {
+            Log.level(Log.Level.DEBUG);
+        } else {
+            Log.level(Log.Level.INFO);
+        }
+
         log("[Enhance] version: %s", EnhanceVersion.NAME);
         log("[Enhance] latest Android SDK version: %s", apiVersionFormatter.format(Api.latest().sdkInt));
         log("[Enhance] https://github.com/noties/Enhance");
 
-        final EnhanceOptions options = EnhanceOptions.create(args);
+        final long start = System.currentTimeMillis();
 
-        // @since 1.0.2
-        // check if we have this version info included and ask user if he/she want to proceed if
-        // supplied sdk is not known to this library version
-        final int sdk = options.sdk();
-        final Api api = Api.of(sdk);
+        log("[Enhance] obtaining application backup directory");
+
+        final File appFolder = new File(System.getProperty("user.home"), APP_FOLDER);
+        if (!appFolder.exists()) {
+            if (!appFolder.mkdirs()) {
+                throw new RuntimeException("Cannot create application backup directory at path: " + appFolder.getPath());
+            }
+        }
 
-        if (api == null) {
+        final List<String> compare = options.compare();
+        if (compare != null) {
+            compare(new File(compare.get(0)), new File(compare.get(1)),
+                    new Session(options, apiVersionFormatter, appFolder, null, out, daemon));
+            Log.flush();
+            return;
+        }
 
-            System.err.printf(Locale.US, "[Enhance] WARNING: specified SDK version %d is unknown to this " +
-                            "library version, do you wish to proceed anyway? (Y|N)%n", sdk);
+        final List<Integer> sdks = options.sdks();
 
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
-                final String line = reader.readLine();
-                if (!"y".equalsIgnoreCase(line)) {
-                    return;
+        final int threads = options.threads();
+
+        // a single pool processes (and backs up) files of all SDKs, so concurrently processed SDKs share
+        //  the threads. Async mode makes workers process own queue in FIFO order, which keeps the size ordering
+        final ForkJoinPool pool;
+        if (threads < 2) {
+            pool = null;
+        } else if (daemon != null) {
+            pool = daemon.pool(threads);
+        } else {
+            pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        }
+
+        final Session session = new Session(options, apiVersionFormatter, appFolder, pool, out, daemon);
+
+        try {
+
+            // contains the whole history, older versions get filtered views of it
+            if (options.sharedApiVersions()) {
+                final int newest = Collections.max(sdks);
+                log("[Enhance] using api-versions.xml of android-%d for all SDK versions", newest);
+                session.sharedApiVersions = SdkHelper.create(options, newest).apiVersions();
+                session.sharedStore = apiInfoStore(session.sharedApiVersions, session);
+            }
+
+            if (sdks.size() > 1 && options.concurrentSdks() && !options.emitDiff()) {
+                enhanceConcurrently(sdks, session);
+            } else {
+                for (int sdk : sdks) {
+                    enhance(sdk, session);
                 }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
             }
+        } finally {
+            if (pool != null && daemon == null) {
+                pool.shutdown();
+            }
+        }
+
+        if (sdks.size() > 1) {
+            log("[Enhance] processing of %d SDK versions took: %s", sdks.size(), format(System.currentTimeMillis() - start));
         }
 
+        Log.flush();
+    }
+
+    @Nonnull
+    private static File daemonToken(int port) {
+        return new File(new File(System.getProperty("user.home"), APP_FOLDER), "daemon-" + port + ".token");
+    }
+
+    // @since 1.0.2
+    // check if we have this version info included and ask user if he/she want to proceed if
+    // supplied sdk is not known to this library version
+    private static boolean confirmUnknownSdks(@Nonnull EnhanceOptions options) {
+
+        final List<Integer> unknown = new ArrayList<>();
+        for (int sdk : options.sdks()) {
+            if (Api.of(sdk) == null) {
+                unknown.add(sdk);
+            }
+        }
+
+        if (unknown.isEmpty()) {
+            return true;
+        }
+
+        Log.flush();
+
+        System.err.printf(Locale.US, "[Enhance] WARNING: specified SDK version %s is unknown to this " +
+                        "library version, do you wish to proceed anyway? (Y|N)%n",
+                unknown.size() == 1 ? unknown.get(0) : unknown);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
+            final String line = reader.readLine();
+            return "y".equalsIgnoreCase(line);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void compare(@Nonnull File old, @Nonnull File updated, @Nonnull Session session) {
+
+        for (File file : Arrays.asList(old, updated)) {
+            if (!file.isFile()) {
+                throw new RuntimeException("api-versions.xml does not exist at path: " + file.getPath());
+            }
+        }
+
+        log("[Enhance] comparing `%s` with `%s`", old.getPath(), updated.getPath());
+
         final long start = System.currentTimeMillis();
 
-        log("[Enhance] obtaining required files/folders");
+        // both files are loaded (and their types hashed) in parallel
+        final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+            final Thread thread = new Thread(runnable, "enhance-compare");
+            thread.setDaemon(true);
+            return thread;
+        });
 
-        final SdkHelper sdkHelper = SdkHelper.create(options);
+        final ApiInfoDiff diff;
+        try {
+            final Future<ApiInfoDiff.Input> oldInput = executor.submit(() ->
+                    new ApiInfoDiff.Input(apiInfoStore(old, session).info()));
+            final Future<ApiInfoDiff.Input> updatedInput = executor.submit(() ->
+                    new ApiInfoDiff.Input(apiInfoStore(updated, session).info()));
+            diff = ApiInfoDiff.create(oldInput.get(), updatedInput.get());
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
 
-        log("[Enhance] obtaining application backup directory");
+        log("[Enhance] %d types differ (%d compared by members), comparison took: %d ms",
+                diff.types().size(), diff.comparedTypes(), System.currentTimeMillis() - start);
 
-        final File appFolder = new File(System.getProperty("user.home"), APP_FOLDER);
-        if (!appFolder.exists()) {
-            if (!appFolder.mkdirs()) {
-                throw new RuntimeException("Cannot create application backup directory at path: " + appFolder.getPath());
+        // diff is printed directly
+        Log.flush();
+        printDiff(diff, session.out);
+    }
+
+    private static void enhanceConcurrently(@Nonnull List<Integer> sdks, @Nonnull Session session) {
+
+        log("[Enhance] processing SDK versions concurrently: %s", sdks);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(sdks.size(), runnable -> {
+            final Thread thread = new Thread(runnable, "enhance-sdk");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>(sdks.size());
+            for (int sdk : sdks) {
+                futures.add(executor.submit(() -> enhance(sdk, session)));
             }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            executor.shutdownNow();
         }
+    }
+
+    private static void enhance(int sdk, @Nonnull Session session) {
 
-        log("[Enhance] parsing api-versions.xml");
+        final EnhanceOptions options = session.options;
+        final File appFolder = session.appFolder;
+
+        final long start = System.currentTimeMillis();
+
+        final Timings timings = Timings.create();
+
+        log("[Enhance] android-%d", sdk);
+
+        log("[Enhance] obtaining required files/folders");
+
+        final SdkHelper sdkHelper = SdkHelper.create(options, sdk);
+
+        final File apiVersions;
+        final ApiInfoStore store;
+        if (session.sharedStore != null && session.sharedApiVersions != null) {
+            apiVersions = session.sharedApiVersions;
+            store = ApiInfoStore.filtered(session.sharedStore, sdk);
+        } else {
+            final Timings.Stopwatch stopwatch = timings.start();
+            apiVersions = sdkHelper.apiVersions();
+            store = apiInfoStore(apiVersions, session);
+            stopwatch.lap(Timings.Stage.API_VERSIONS);
+        }
 
-        final ApiInfoStore store = ApiInfoStore.create(sdkHelper.apiVersions());
         if (options.emitDiff()) {
-            log("[Enhance] emit diff for api:%s", api != null ? api : sdk);
-            printStatsFor(sdk, store.info());
+            final List<Integer> versions = options.diffVersions().isEmpty()
+                    ? Collections.singletonList(sdk)
+                    : options.diffVersions();
+            if (versions.size() == 1) {
+                final Api api = Api.of(versions.get(0));
+                log("[Enhance] emit diff for api:%s", api != null ? api : versions.get(0));
+            } else {
+                log("[Enhance] emit diff for apis:%s", versions);
+            }
+            // stats are printed directly
+            Log.flush();
+            printStatsFor(versions, store.versionIndex(), session.out);
             return;
         }
 
         final File sdkSources = sdkHelper.source();
 
-        final File source;
-        {
-            final String folder = sdkHelper.folder();
-            final File file = new File(appFolder, folder);
-            if (!file.exists()) {
+        // original folder is replaced only after all files are written, files with the same contents
+        //  are kept as is. It also locks the folder (and restores it, if previous run has been interrupted)
+        final StagedOutput output = StagedOutput.create(sdkSources, options.link());
 
-                if (!file.mkdirs()) {
-                    throw new RuntimeException("Cannot create android sources backup folder at: " + file.getPath());
-                }
+        try {
 
-                // backup sources first
+            final File source;
+            {
+                final String folder = sdkHelper.folder();
+                final File file = new File(appFolder, folder);
+                if (!file.exists()) {
 
-                log("[Enhance] backing up android sources, from: `%s` to: `%s`", sdkSources.getPath(), file.getPath());
+                    if (!file.mkdirs()) {
+                        throw new RuntimeException("Cannot create android sources backup folder at: " + file.getPath());
+                    }
 
-                try {
-                    FileUtils.copyDirectory(sdkSources, file);
-                } catch (IOException e) {
+                    // backup sources first
+
+                    log("[Enhance] backing up android sources, from: `%s` to: `%s`", sdkSources.getPath(), file.getPath());
 
-                    // let's try to remove backup directory
                     try {
-                        FileUtils.cleanDirectory(file);
-                        //noinspection ResultOfMethodCallIgnored
-                        file.delete();
-                    } catch (IOException e1) {
-                        // no op
+                        final Timings.Stopwatch stopwatch = timings.start();
+                        BackupStore.create(new File(appFolder, OBJECTS_FOLDER))
+                                .backup(sdkSources, file, session.pool);
+                        stopwatch.lap(Timings.Stage.BACKUP);
+                    } catch (IOException e) {
+
+                        // let's try to remove backup directory
+                        try {
+                            FileUtils.cleanDirectory(file);
+                            //noinspection ResultOfMethodCallIgnored
+                            file.delete();
+                        } catch (IOException e1) {
+                            // no op
+                        }
+
+                        throw new RuntimeException(e);
                     }
 
+                }
+                source = file;
+            }
+
+            // now, we duplicate files from backup to source, if it's java and there api info -> parse and api info
+
+            final File[] files = source.listFiles();
+            if (files == null
+                    || files.length == 0) {
+                throw new RuntimeException("Unexpected state of the source directory: it is empty. Try removing it first: " + source.getPath());
+            }
+
+            final Manifest manifest;
+            {
+                final File file = new File(appFolder, sdkHelper.folder() + MANIFEST_EXTENSION);
+                final String inputs = manifestInputs(sdk, options, session.sha256(apiVersions));
+                manifest = options.full()
+                        ? Manifest.empty(file, inputs)
+                        : Manifest.load(file, inputs);
+
+                // remove it until processing is done, so an interrupted run would start from scratch
+                try {
+                    manifest.delete();
+                } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
+            }
+
+            if (!manifest.isEmpty()) {
+                log("[Enhance] keeping results of the previous run, only changed files would be processed");
+            }
 
+            final Map<String, Integer> pipeline = options.pipeline();
+
+            if (pipeline != null) {
+                log("[Enhance] processing source files in a pipeline, workers: %s", pipeline.isEmpty() ? "1 per stage" : pipeline);
+            } else {
+                log("[Enhance] processing source files, threads: %d", options.threads());
+            }
+
+            final EnhanceWriter writer = EnhanceWriter.create(
+                    sdk,
+                    options.sourceFormat(),
+                    store,
+                    session.apiVersionFormatter,
+                    session.pool,
+                    pipeline,
+                    session.daemon != null ? session.daemon.executor() : null,
+                    options.splice(),
+                    timings
+            );
+            writer.write(source, output, manifest);
+
+            try {
+                final Timings.Stopwatch commit = timings.start();
+                output.commit();
+                commit.lap(Timings.Stage.COMMIT);
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot replace source folder: " + sdkSources.getPath(), e);
+            }
+
+            try {
+                manifest.save();
+            } catch (IOException e) {
+                warn("[Enhance] cannot save manifest: %s", e.getMessage());
             }
-            source = file;
+
+        } finally {
+            output.close();
         }
 
-        // now, we duplicate files from backup to source, if it's java and there api info -> parse and api info
+        final long took = System.currentTimeMillis() - start;
+
+        log("[Enhance] processing of android-%d took: %s", sdk, format(took));
 
-        final File[] files = source.listFiles();
-        if (files == null
-                || files.length == 0) {
-            throw new RuntimeException("Unexpected state of the source directory: it is empty. Try removing it first: " + source.getPath());
+        timings.report();
+
+        final String timingsFile = timingsFile(options, sdk);
+        if (timingsFile != null) {
+            try {
+                timings.writeJson(new File(timingsFile));
+                log("[Enhance] timings written to: %s", timingsFile);
+            } catch (IOException e) {
+                warn("[Enhance] cannot write timings: %s", e.getMessage());
+            }
         }
+    }
 
-        log("[Enhance] cleaning the original source folder: `%s`", sdkSources.getPath());
+    @Nonnull
+    private static ApiInfoStore apiInfoStore(@Nonnull File apiVersions, @Nonnull Session session) {
 
-        try {
-            FileUtils.cleanDirectory(sdkSources);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        final EnhanceOptions options = session.options;
+
+        if (session.daemon != null) {
+            final ApiInfoStore store = session.daemon.store(apiVersions);
+            if (store != null) {
+                log("[Enhance] using loaded api-versions.xml: %s", apiVersions.getPath());
+                return store;
+            }
         }
 
-        log("[Enhance] processing source files");
+        log("[Enhance] parsing api-versions.xml, parser: %s", options.domParser() ? "dom" : "stream");
 
-        final EnhanceWriter writer = EnhanceWriter.create(
-                sdk,
-                options.sourceFormat(),
-                store,
-                apiVersionFormatter
-        );
-        writer.write(source, sdkSources);
+        final long parseStart = System.currentTimeMillis();
+        final ApiInfoStore store = options.cache()
+                ? ApiInfoStore.cached(apiVersions, session.sha256(apiVersions), new File(session.appFolder, CACHE_FOLDER), options.domParser())
+                : ApiInfoStore.create(apiVersions, options.domParser());
 
-        final long took = System.currentTimeMillis() - start;
+        if (session.daemon != null) {
+            session.daemon.store(apiVersions, store);
+        }
+
+        log("[Enhance] parsing api-versions.xml took: %d ms", System.currentTimeMillis() - parseStart);
+
+        return store;
+    }
+
+    // everything besides source file itself that affects the output
+    @Nonnull
+    private static String manifestInputs(int sdk, @Nonnull EnhanceOptions options, @Nonnull String apiVersionsSha256) {
+        return "version=" + EnhanceVersion.NAME
+                + " sdk=" + sdk
+                + " format=" + options.sourceFormat()
+                + " splice=" + options.splice()
+                + " api-versions=" + apiVersionsSha256;
+    }
 
-        log("[Enhance] processing took: %s", format(took));
+    // each SDK gets own file if several are processed: `timings.json` -> `timings-android-34.json`
+    @Nullable
+    private static String timingsFile(@Nonnull EnhanceOptions options, int sdk) {
+        final String path = options.timings();
+        if (path == null
+                || options.sdks().size() == 1) {
+            return path;
+        }
+        final int index = path.lastIndexOf('.');
+        return index > path.lastIndexOf(File.separatorChar)
+                ? path.substring(0, index) + "-android-" + sdk + path.substring(index)
+                : path + "-android-" + sdk;
     }
 
     @Nonnull
@@ -151,4 +498,53 @@ public class Enhance {
 
         return String.format("%02d minutes %02d seconds", minutes, seconds);
     }
+
+    // state of a single run shared by all processed SDK versions
+    private static class Session {
+
+        final EnhanceOptions options;
+        final ApiVersionFormatter apiVersionFormatter;
+        final File appFolder;
+        @Nullable
+        final ForkJoinPool pool;
+        final PrintStream out;
+        @Nullable
+        final Daemon daemon;
+
+        // set if `api-versions.xml` of the newest SDK version is used for all of them
+        @Nullable
+        File sharedApiVersions;
+        @Nullable
+        ApiInfoStore sharedStore;
+
+        // SHA-256 of each `api-versions.xml` used, needed by both the index cache and the manifest
+        private final Map<String, String> sha256 = new ConcurrentHashMap<>();
+
+        Session(
+                @Nonnull EnhanceOptions options,
+                @Nonnull ApiVersionFormatter apiVersionFormatter,
+                @Nonnull File appFolder,
+                @Nullable ForkJoinPool pool,
+                @Nonnull PrintStream out,
+                @Nullable Daemon daemon
+        ) {
+            this.options = options;
+            this.apiVersionFormatter = apiVersionFormatter;
+            this.appFolder = appFolder;
+            this.pool = pool;
+            this.out = out;
+            this.daemon = daemon;
+        }
+
+        @Nonnull
+        String sha256(@Nonnull File apiVersions) {
+            return sha256.computeIfAbsent(apiVersions.getAbsolutePath(), path -> {
+                try {
+                    return Hash.sha256(apiVersions);
+                } catch (IOException e) {
+                    throw new RuntimeException("Cannot read api-versions.xml at path: " + path, e);
+                }
+            });
+        }
+    }
 }
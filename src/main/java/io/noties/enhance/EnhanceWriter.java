@@ -3,19 +3,42 @@ package io.noties.enhance;
 import io.noties.enhance.options.SourceFormat;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public abstract class EnhanceWriter {
 
+    /**
+     * @param pool     pool to process files with, it is not shut down. `null` to process files
+     *                 sequentially on the calling thread
+     * @param pipeline worker count of each processing stage by its name if files should be processed
+     *                 in a pipeline (`pool` is ignored then), `null` otherwise
+     * @param executor runs pipeline workers (see {@link Pipeline#create(Executor)}), `null` to start
+     *                 own threads
+     */
     @Nonnull
     public static EnhanceWriter create(
             int sdk,
             @Nonnull SourceFormat format,
             @Nonnull ApiInfoStore apiInfoStore,
-            @Nonnull ApiVersionFormatter apiVersionFormatter
+            @Nonnull ApiVersionFormatter apiVersionFormatter,
+            @Nullable ForkJoinPool pool,
+            @Nullable Map<String, Integer> pipeline,
+            @Nullable Executor executor,
+            boolean splice,
+            @Nonnull Timings timings
     ) {
-        return new EnhanceWriterImpl(sdk, format, apiInfoStore, apiVersionFormatter);
+        return new EnhanceWriterImpl(sdk, format, apiInfoStore, apiVersionFormatter, pool, pipeline, executor, splice, timings);
     }
 
-    public abstract void write(@Nonnull File source, @Nonnull File destination);
+    /**
+     * @param output   files are written to the staging folder, current files (from the target folder)
+     *                 are kept if contents are the same. Output is not committed
+     * @param manifest results of the previous run, files that are up-to-date are not processed.
+     *                 Processed files are recorded
+     */
+    public abstract void write(@Nonnull File source, @Nonnull StagedOutput output, @Nonnull Manifest manifest);
 }
@@ -2,11 +2,17 @@ package io.noties.enhance;
 
 import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParseStart;
 import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.Position;
+import com.github.javaparser.Provider;
+import com.github.javaparser.Range;
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.PackageDeclaration;
 import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.comments.JavadocComment;
 import com.github.javaparser.ast.nodeTypes.NodeWithJavadoc;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import com.github.javaparser.javadoc.Javadoc;
@@ -20,19 +26,33 @@ import org.apache.commons.io.FileUtils;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.noties.enhance.Log.debug;
 import static io.noties.enhance.Log.log;
 
 class EnhanceWriterImpl extends EnhanceWriter {
 
     private interface Parser {
+        /**
+         * @param fallbacks incremented if a file has been parsed twice
+         */
         @Nonnull
-        CompilationUnit parse(@Nonnull File file);
+        CompilationUnit parse(@Nonnull CharSequence source, @Nonnull AtomicInteger fallbacks);
     }
 
     private interface SourceFormatter {
@@ -40,11 +60,22 @@ class EnhanceWriterImpl extends EnhanceWriter {
         String format(@Nonnull String source);
     }
 
+    // each worker thread obtains own parsers and formatters, as neither of them is thread-safe.
+    //  They are shared by all writers, so a thread that processes several SDKs creates (and warms up) them once
+    private static final ThreadLocal<Parser> PARSER_11 = ThreadLocal.withInitial(Parser11::new);
+    private static final ThreadLocal<Parser> PARSER_17 = ThreadLocal.withInitial(Parser17::new);
+
+    private static final ThreadLocal<Map<SourceFormat, SourceFormatter>> SOURCE_FORMATTERS =
+            ThreadLocal.withInitial(() -> new EnumMap<>(SourceFormat.class));
+
+    private final int sdk;
+
     @Nonnull
-    private final Parser parser;
+    private final ThreadLocal<Parser> parser;
 
+    // `null` if sources are not formatted
     @Nullable
-    private final SourceFormatter sourceFormatter;
+    private final SourceFormat sourceFormat;
 
     @Nonnull
     private final ApiInfoStore apiInfoStore;
@@ -52,29 +83,108 @@ class EnhanceWriterImpl extends EnhanceWriter {
     @Nonnull
     private final ApiVersionFormatter apiVersionFormatter;
 
+    // `null` to process files sequentially on the calling thread
+    @Nullable
+    private final ForkJoinPool pool;
+
+    // worker count by stage name, `null` if files are not processed in a pipeline
+    @Nullable
+    private final Map<String, Integer> pipeline;
+
+    // runs pipeline workers, `null` if they get own threads
+    @Nullable
+    private final Executor executor;
+
+    private final boolean splice;
+
+    @Nonnull
+    private final Timings timings;
+
+    private final AtomicInteger upToDate = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+    private final AtomicInteger withoutApiInfo = new AtomicInteger();
+    private final AtomicInteger passedThrough = new AtomicInteger();
+    private final AtomicInteger parserFallbacks = new AtomicInteger();
+
     EnhanceWriterImpl(
             int sdk,
             @Nonnull SourceFormat format,
             @Nonnull ApiInfoStore apiInfoStore,
-            @Nonnull ApiVersionFormatter apiVersionFormatter
+            @Nonnull ApiVersionFormatter apiVersionFormatter,
+            @Nullable ForkJoinPool pool,
+            @Nullable Map<String, Integer> pipeline,
+            @Nullable Executor executor,
+            boolean splice,
+            @Nonnull Timings timings
     ) {
-        this.parser = sdk >= Api.SDK_34.sdkInt ? new Parser17() : new Parser11();
-
-        this.sourceFormatter = sourceFormatter(format);
+        this.sdk = sdk;
+        this.parser = sdk >= Api.SDK_34.sdkInt ? PARSER_17 : PARSER_11;
+        this.sourceFormat = format != SourceFormat.NONE ? format : null;
         this.apiInfoStore = apiInfoStore;
         this.apiVersionFormatter = apiVersionFormatter;
+        this.pool = pool;
+        this.pipeline = pipeline;
+        this.executor = executor;
+        this.splice = splice;
+        this.timings = timings;
     }
 
     @Override
-    public void write(@Nonnull File source, @Nonnull File destination) {
-        write("", source, destination);
+    public void write(@Nonnull File source, @Nonnull StagedOutput output, @Nonnull Manifest manifest) {
+
+        final List<Job> jobs = new ArrayList<>();
+        collect("", source, output.target(), output.staging(), jobs);
+
+        // largest files go first, so a single big file (`View.java`) does not hold up the end of the run
+        jobs.sort(Comparator.comparingLong((Job job) -> job.length).reversed());
+
+        long bytes = 0L;
+        for (Job job : jobs) {
+            bytes += job.length;
+        }
+
+        final Progress progress = Progress.start("processing android-" + sdk, jobs.size(), bytes);
+
+        try {
+            write(jobs, output, manifest, progress);
+        } finally {
+            progress.stop();
+        }
+
+        log("[Enhance] files up-to-date: %d, processed: %d (unchanged: %d)",
+                upToDate.get(), jobs.size() - upToDate.get(), unchanged.get());
+        log("[Enhance] java files without api info (copied as is): %d", withoutApiInfo.get());
+        log("[Enhance] java files with no api info applied (copied as is): %d", passedThrough.get());
+        if (parserFallbacks.get() > 0) {
+            log("[Enhance] files parsed twice (language level guessed wrong): %d", parserFallbacks.get());
+        }
     }
 
-    // `path` could be used in future if some files would be processed differently
     private void write(
+            @Nonnull List<Job> jobs,
+            @Nonnull StagedOutput output,
+            @Nonnull Manifest manifest,
+            @Nonnull Progress progress
+    ) {
+        if (pipeline != null) {
+            writePipelined(jobs, output, manifest, progress);
+        } else if (pool != null) {
+            pool.invoke(new WriteAction(jobs, output, manifest, progress));
+        } else {
+            for (Job job : jobs) {
+                write(job, output, manifest);
+                progress.processed(job.length);
+            }
+        }
+    }
+
+    // creates destination folders and collects files to be processed
+    private void collect(
             @Nonnull String path,
             @Nonnull File source,
-            @Nonnull File destination
+            @Nonnull File current,
+            @Nonnull File destination,
+            @Nonnull List<Job> jobs
     ) {
         final File[] files = source.listFiles();
         //noinspection RedundantLengthCheck
@@ -88,45 +198,301 @@ class EnhanceWriterImpl extends EnhanceWriter {
             if (file.isDirectory()) {
 
                 final File folder = new File(destination, file.getName());
-                if (!folder.mkdirs()) {
+                if (!folder.exists() && !folder.mkdirs()) {
                     throw new RuntimeException("Cannot create folder: " + folder.getPath());
                 }
 
-                write(
+                collect(
                         path + "/" + file.getName(),
                         file,
-                        folder
+                        new File(current, file.getName()),
+                        folder,
+                        jobs
                 );
 
             } else {
+                jobs.add(new Job(
+                        path,
+                        file,
+                        new File(current, file.getName()),
+                        new File(destination, file.getName())
+                ));
+            }
+        }
+    }
+
+    private void write(@Nonnull Job job, @Nonnull StagedOutput output, @Nonnull Manifest manifest) {
+
+        final Timings.Stopwatch stopwatch = timings.start();
+
+        if (keep(job, output, manifest)) {
+            stopwatch.lap(Timings.Stage.KEEP);
+            return;
+        }
+
+        final boolean process = isToProcess(job);
+
+        stopwatch.lap(Timings.Stage.CHECK);
+
+        if (process) {
+            final CharSequence java = processJavaFile(job.source, stopwatch);
+            if (java != null) {
+                writeJava(job, output, java);
+                stopwatch.lap(Timings.Stage.WRITE);
+            } else {
+                passedThrough.incrementAndGet();
+                copy(job, output);
+                stopwatch.lap(Timings.Stage.COPY);
+            }
+        } else {
+            copy(job, output);
+            stopwatch.lap(Timings.Stage.COPY);
+        }
+
+        manifest.record(job.path + "/" + job.source.getName(), job.source, job.destination);
+
+        stopwatch.lap(Timings.Stage.RECORD);
+        stopwatch.file(job.path + "/" + job.source.getName(), job.length);
+    }
 
-                final String name = file.getName();
-                final File f = new File(destination, name);
+    // each stage of processing gets own workers, a file is passed between stages in an `Item`
+    private void writePipelined(
+            @Nonnull List<Job> jobs,
+            @Nonnull StagedOutput output,
+            @Nonnull Manifest manifest,
+            @Nonnull Progress progress
+    ) {
+        final Map<String, Integer> workers = pipeline;
+        if (workers == null) {
+            throw new IllegalStateException("Pipeline is not configured");
+        }
 
-                log("[Enhance] path:'%s' name:'%s'", path, name);
+        final List<Item> items = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            items.add(new Item(job));
+        }
 
-                if (isJavaFileToProcess(name)) {
-                    final String java = processJavaFile(file);
-                    try {
-                        FileUtils.write(f, java, StandardCharsets.UTF_8);
-                    } catch (IOException e) {
-                        throw new RuntimeException(
-                                "Error writing file:'" + name + "' at path:'" + path + "'",
-                                e
-                        );
+        // a read file is passed to other threads, so it cannot be in a buffer of the reading thread.
+        //  Buffers are returned after printing, their number is bounded by files in the pipeline
+        final Queue<CharBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+        final Pipeline<Item> pipeline = Pipeline.<Item>create(executor)
+                .stage("read", workers.getOrDefault("read", 1), item -> {
+                    final Job job = item.job;
+                    item.started = System.nanoTime();
+                    final Timings.Stopwatch stopwatch = timings.start();
+                    if (keep(job, output, manifest)) {
+                        stopwatch.lap(Timings.Stage.KEEP);
+                        progress.processed(job.length);
+                        return false;
                     }
-                } else {
-                    log("[Enhance] copy file: %s", file.getPath());
-                    try {
-                        FileUtils.copyFile(file, f);
-                    } catch (IOException e) {
-                        throw new RuntimeException(
-                                "Error copying file:'" + name + "' at path:'" + path + "'",
-                                e
-                        );
+                    final boolean process = isToProcess(job);
+                    stopwatch.lap(Timings.Stage.CHECK);
+                    if (!process) {
+                        // files that are copied as is are done here
+                        copy(job, output);
+                        stopwatch.lap(Timings.Stage.COPY);
+                        done(item, manifest, progress);
+                        stopwatch.lap(Timings.Stage.RECORD);
+                        return false;
                     }
-                }
+                    final CharBuffer buffer = buffers.poll();
+                    item.original = read(job.source, buffer != null ? buffer : CharBuffer.allocate(0));
+                    stopwatch.lap(Timings.Stage.READ);
+                    return true;
+                })
+                .stage("parse", workers.getOrDefault("parse", 1), item -> {
+                    final Timings.Stopwatch stopwatch = timings.start();
+                    item.unit = parser.get().parse(item.original, parserFallbacks);
+                    stopwatch.lap(Timings.Stage.PARSE);
+                    return true;
+                })
+                .stage("visit", workers.getOrDefault("visit", 1), item -> {
+                    final Timings.Stopwatch stopwatch = timings.start();
+                    final ApiInfoVisitor visitor = visit(item.unit, item.original);
+                    stopwatch.lap(Timings.Stage.VISIT);
+                    if (!visitor.changed()) {
+                        // nothing to print, the original file is copied
+                        buffers.add(item.original);
+                        item.original = null;
+                        item.unit = null;
+                        passedThrough.incrementAndGet();
+                        copy(item.job, output);
+                        stopwatch.lap(Timings.Stage.COPY);
+                        done(item, manifest, progress);
+                        stopwatch.lap(Timings.Stage.RECORD);
+                        return false;
+                    }
+                    item.visitor = visitor;
+                    return true;
+                })
+                .stage("print", workers.getOrDefault("print", 1), item -> {
+                    final Timings.Stopwatch stopwatch = timings.start();
+                    item.out = print(item.unit, item.visitor);
+                    buffers.add(item.original);
+                    item.original = null;
+                    item.unit = null;
+                    item.visitor = null;
+                    stopwatch.lap(Timings.Stage.PRINT);
+                    return true;
+                });
+
+        if (sourceFormat != null) {
+            pipeline.stage("format", workers.getOrDefault("format", 1), item -> {
+                final Timings.Stopwatch stopwatch = timings.start();
+                item.out = format(item.job.source, item.out);
+                stopwatch.lap(Timings.Stage.FORMAT);
+                return true;
+            });
+        }
+
+        pipeline.stage("write", workers.getOrDefault("write", 1), item -> {
+            final Timings.Stopwatch stopwatch = timings.start();
+            writeJava(item.job, output, item.out);
+            item.out = null;
+            stopwatch.lap(Timings.Stage.WRITE);
+            done(item, manifest, progress);
+            stopwatch.lap(Timings.Stage.RECORD);
+            return false;
+        });
+
+        try {
+            pipeline.run(items);
+        } finally {
+            pipeline.report();
+        }
+    }
+
+    private void done(@Nonnull Item item, @Nonnull Manifest manifest, @Nonnull Progress progress) {
+        final Job job = item.job;
+        final String path = job.path + "/" + job.source.getName();
+        manifest.record(path, job.source, job.destination);
+        timings.file(path, job.length, System.nanoTime() - item.started);
+        progress.processed(job.length);
+    }
+
+    // keeps the file from the previous run if it is up-to-date
+    private boolean keep(@Nonnull Job job, @Nonnull StagedOutput output, @Nonnull Manifest manifest) {
+
+        final String path = job.path;
+        final String name = job.source.getName();
+
+        try {
+            if (manifest.isUpToDate(path + "/" + name, job.source, job.current)
+                    && output.keep(job.current, job.destination)) {
+                upToDate.incrementAndGet();
+                return true;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    "Error keeping file:'" + name + "' at path:'" + path + "'",
+                    e
+            );
+        }
+
+        debug("[Enhance] path:'%s' name:'%s'", path, name);
+
+        return false;
+    }
+
+    private boolean isToProcess(@Nonnull Job job) {
+        final String name = job.source.getName();
+        return isJavaFileToProcess(name)
+                && !isWithoutApiInfo(job.path, name, job.source);
+    }
+
+    private void writeJava(@Nonnull Job job, @Nonnull StagedOutput output, @Nonnull CharSequence java) {
+        try {
+            if (!output.write(job.current, job.destination, java)) {
+                unchanged.incrementAndGet();
             }
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    "Error writing file:'" + job.source.getName() + "' at path:'" + job.path + "'",
+                    e
+            );
+        }
+    }
+
+    private void copy(@Nonnull Job job, @Nonnull StagedOutput output) {
+        try {
+            if (!output.copy(job.current, job.destination, job.source)) {
+                unchanged.incrementAndGet();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    "Error copying file:'" + job.source.getName() + "' at path:'" + job.path + "'",
+                    e
+            );
+        }
+    }
+
+    private static class Job {
+
+        final String path;
+        final File source;
+        // file in the target folder (result of the previous run), might not exist
+        final File current;
+        final File destination;
+        final long length;
+
+        Job(@Nonnull String path, @Nonnull File source, @Nonnull File current, @Nonnull File destination) {
+            this.path = path;
+            this.source = source;
+            this.current = current;
+            this.destination = destination;
+            this.length = source.length();
+        }
+    }
+
+    // state of a file passed between pipeline stages
+    private static class Item {
+
+        final Job job;
+
+        long started;
+
+        CharBuffer original;
+        CompilationUnit unit;
+        ApiInfoVisitor visitor;
+        CharSequence out;
+
+        Item(@Nonnull Job job) {
+            this.job = job;
+        }
+    }
+
+    private class WriteAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Job> jobs;
+        private final StagedOutput output;
+        private final Manifest manifest;
+        private final Progress progress;
+
+        WriteAction(
+                @Nonnull List<Job> jobs,
+                @Nonnull StagedOutput output,
+                @Nonnull Manifest manifest,
+                @Nonnull Progress progress
+        ) {
+            this.jobs = jobs;
+            this.output = output;
+            this.manifest = manifest;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            final List<ForkJoinTask<?>> tasks = new ArrayList<>(jobs.size());
+            for (Job job : jobs) {
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    write(job, output, manifest);
+                    progress.processed(job.length);
+                }));
+            }
+            invokeAll(tasks);
         }
     }
 
@@ -135,47 +501,148 @@ class EnhanceWriterImpl extends EnhanceWriter {
         return name.endsWith(".java") && !name.endsWith(".annotated.java");
     }
 
-    @Nonnull
-    private String processJavaFile(@Nonnull File file) {
+    // checks if the store has no information for the type that the file at the path is expected to declare
+    //  (`/android/app` + `Activity.java`), it is trusted only if declared package matches the path
+    private boolean isWithoutApiInfo(@Nonnull String path, @Nonnull String name, @Nonnull File file) {
 
-        log("[Enhance] processing java source file: %s", file.getPath());
+        final String simpleName = name.substring(0, name.length() - ".java".length());
+        final String type = path.isEmpty()
+                ? simpleName
+                : path.substring(1) + "/" + simpleName;
 
-        final CompilationUnit unit = parser.parse(file);
+        if (apiInfoStore.hasTopLevelType(type)) {
+            return false;
+        }
 
-        unit.accept(new ApiInfoVisitor(apiVersionFormatter), apiInfoStore);
+        final String declared;
+        try {
+            declared = PackageScanner.scan(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading file:'" + name + "' at path:'" + path + "'", e);
+        }
 
-        final String out;
+        final boolean result = declared != null
+                && path.equals(declared.isEmpty() ? "" : "/" + declared.replace('.', '/'));
 
-        if (sourceFormatter == null) {
-            out = unit.toString();
-        } else {
-            final String source = unit.toString();
-            try {
-                out = sourceFormatter.format(source);
-            } catch (Throwable t) {
-                try {
-                    final File failedFile = new File(".", ".failed." + file.getName());
-                    FileUtils.write(failedFile, source, "utf-8");
-                } catch (IOException e) {
-                    // ignored
-                }
-                throw t;
-            }
+        if (result) {
+            withoutApiInfo.incrementAndGet();
+        }
+
+        return result;
+    }
+
+    // package-private for tests and benchmarks
+    // returns `null` if no api info has been applied, the file must be copied as is then
+    @Nullable
+    CharSequence processJavaFile(@Nonnull File file, @Nonnull Timings.Stopwatch stopwatch) {
+
+        // valid until the next file is read by this thread
+        final CharBuffer original = read(file);
+
+        stopwatch.lap(Timings.Stage.READ);
+
+        final CompilationUnit unit = parser.get().parse(original, parserFallbacks);
+
+        stopwatch.lap(Timings.Stage.PARSE);
+
+        final ApiInfoVisitor visitor = visit(unit, original);
+
+        stopwatch.lap(Timings.Stage.VISIT);
+
+        if (!visitor.changed()) {
+            return null;
+        }
+
+        final CharSequence source = print(unit, visitor);
+
+        stopwatch.lap(Timings.Stage.PRINT);
+
+        if (sourceFormat == null) {
+            return source;
         }
 
+        final CharSequence out = format(file, source);
+
+        stopwatch.lap(Timings.Stage.FORMAT);
+
         return out;
     }
 
+    @Nonnull
+    private static CharBuffer read(@Nonnull File file) {
+        try {
+            return FileBuffers.read(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading file: " + file.getPath(), e);
+        }
+    }
+
+    @Nonnull
+    private static CharBuffer read(@Nonnull File file, @Nonnull CharBuffer into) {
+        try {
+            return FileBuffers.read(file, into);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading file: " + file.getPath(), e);
+        }
+    }
+
+    // in splice mode visitor holds edits, otherwise the unit is modified
+    @Nonnull
+    private ApiInfoVisitor visit(@Nonnull CompilationUnit unit, @Nonnull CharSequence original) {
+        final ApiInfoVisitor visitor = splice
+                ? new SpliceApiInfoVisitor(apiVersionFormatter, original)
+                : new ApiInfoVisitor(apiVersionFormatter);
+        unit.accept(visitor, apiInfoStore);
+        return visitor;
+    }
+
+    @Nonnull
+    private static CharSequence print(@Nonnull CompilationUnit unit, @Nonnull ApiInfoVisitor visitor) {
+        return visitor instanceof SpliceApiInfoVisitor
+                ? ((SpliceApiInfoVisitor) visitor).splice()
+                : unit.toString();
+    }
+
+    @Nonnull
+    private CharSequence format(@Nonnull File file, @Nonnull CharSequence source) {
+        if (sourceFormat == null) {
+            return source;
+        }
+        try {
+            // formatters take a String, printed source is a String unless it is spliced (that is never formatted)
+            return SOURCE_FORMATTERS.get()
+                    .computeIfAbsent(sourceFormat, EnhanceWriterImpl::sourceFormatter)
+                    .format(source.toString());
+        } catch (Throwable t) {
+            try {
+                final File failedFile = new File(".", ".failed." + file.getName());
+                FileUtils.write(failedFile, source, "utf-8");
+            } catch (IOException e) {
+                // ignored
+            }
+            throw t;
+        }
+    }
+
     private static class ApiInfoVisitor extends VoidVisitorAdapter<ApiInfoStore> {
 
-        private final ApiVersionFormatter formatter;
+        final ApiVersionFormatter formatter;
 
         private String currentPackage;
 
+        private final StringBuilder signature = new StringBuilder();
+
+        private boolean changed;
+
         ApiInfoVisitor(@Nonnull ApiVersionFormatter formatter) {
             this.formatter = formatter;
         }
 
+        // if api info has been applied to any node
+        boolean changed() {
+            return changed;
+        }
+
         @Override
         public void visit(PackageDeclaration n, ApiInfoStore arg) {
             currentPackage = n.getNameAsString().replaceAll("\\.", "/") + "/";
@@ -195,7 +662,7 @@ class EnhanceWriterImpl extends EnhanceWriter {
                 }
             }
 
-            visit(type, n, arg, n.getConstructors());
+            visit(type, n, arg);
         }
 
         @Override
@@ -204,65 +671,56 @@ class EnhanceWriterImpl extends EnhanceWriter {
 
             final String type = typeName(n);
 
-            visit(type, n, api, n.getConstructors());
+            visit(type, n, api);
         }
 
         private void visit(
                 @Nonnull String type,
                 @Nonnull TypeDeclaration<?> n,
-                @Nonnull ApiInfoStore api,
-                @Nullable List<ConstructorDeclaration> constructors
+                @Nonnull ApiInfoStore api
         ) {
 
-            final List<FieldDeclaration> fields = n.getFields();
-            if (fields != null) {
+            // members are iterated directly, `getFields`, `getMethods` and `getConstructors` create lists
+            final NodeList<BodyDeclaration<?>> members = n.getMembers();
 
-                String name;
+            for (int i = 0, size = members.size(); i < size; i++) {
 
-                for (FieldDeclaration field : fields) {
+                final BodyDeclaration<?> member = members.get(i);
 
-                    name = field.getVariables().get(0).getNameAsString();
-                    setApiInfo(field, api.field(type, name));
+                if (member instanceof FieldDeclaration) {
+                    final FieldDeclaration field = (FieldDeclaration) member;
+                    setApiInfo(field, api.field(type, field.getVariables().get(0).getNameAsString()));
+                } else if (member instanceof CallableDeclaration) {
+                    // signature is built into the reused builder, lookup does not create a String
+                    final CallableDeclaration<?> declaration = (CallableDeclaration<?>) member;
+                    signature.setLength(0);
+                    ByteCodeSignature.append(signature, declaration);
+                    setApiInfo(declaration, api.method(type, signature));
                 }
             }
 
-            final List<CallableDeclaration<?>> callableDeclarations;
-            {
-                callableDeclarations = new ArrayList<>();
-                final List<MethodDeclaration> methods = n.getMethods();
-                if (methods != null) {
-                    callableDeclarations.addAll(methods);
-                }
-
-                if (constructors != null) {
-                    callableDeclarations.addAll(constructors);
-                }
-            }
-
-            for (CallableDeclaration<?> declaration : callableDeclarations) {
-                setApiInfo(declaration, api.method(type, ByteCodeSignature.create(declaration)));
-            }
-
             final ApiInfo info = api.type(type);
             if (info != null) {
                 setApiInfo(n, info);
             }
         }
 
-        private void setApiInfo(@Nonnull NodeWithJavadoc<?> node, @Nullable ApiInfo apiInfo) {
+        void setApiInfo(@Nonnull NodeWithJavadoc<?> node, @Nullable ApiInfo apiInfo) {
 
             if (apiInfo == null) {
                 return;
             }
 
+            changed = true;
+
             Javadoc javadoc = node.getJavadoc().orElse(null);
             if (javadoc == null) {
                 javadoc = new Javadoc(new JavadocDescription());
             }
-            if (apiInfo.since != null) {
+            if (apiInfo.hasSince()) {
                 javadoc.addBlockTag("since", formatter.format(apiInfo.since));
             }
-            if (apiInfo.deprecated != null) {
+            if (apiInfo.hasDeprecated()) {
                 javadoc.addBlockTag("deprecated", formatter.format(apiInfo.deprecated));
             }
             node.setJavadocComment(javadoc.toComment("  "));
@@ -296,6 +754,188 @@ class EnhanceWriterImpl extends EnhanceWriter {
         }
     }
 
+    // instead of modifying the tree, records where javadoc tags should be placed in the original
+    //  source, so the rest of the file is kept as is and neither printing nor formatting is required
+    private static class SpliceApiInfoVisitor extends ApiInfoVisitor {
+
+        // not copied, valid only while the file is processed
+        private final CharSequence source;
+        private final String lineSeparator;
+        private final int[] lines;
+
+        private final List<Edit> edits = new ArrayList<>();
+
+        SpliceApiInfoVisitor(@Nonnull ApiVersionFormatter formatter, @Nonnull CharSequence source) {
+            super(formatter);
+            this.source = source;
+            this.lineSeparator = lineSeparator(source);
+            this.lines = lines(source);
+        }
+
+        @Override
+        boolean changed() {
+            return !edits.isEmpty();
+        }
+
+        // spliced source in a builder, it is written as is
+        @Nonnull
+        CharSequence splice() {
+
+            if (edits.isEmpty()) {
+                return source;
+            }
+
+            edits.sort(Comparator.comparingInt((Edit edit) -> edit.start));
+
+            final StringBuilder builder = new StringBuilder(source.length() + edits.size() * 64);
+            int index = 0;
+            for (Edit edit : edits) {
+                builder.append(source, index, edit.start)
+                        .append(edit.text);
+                index = edit.end;
+            }
+            builder.append(source, index, source.length());
+
+            return builder;
+        }
+
+        @Override
+        void setApiInfo(@Nonnull NodeWithJavadoc<?> node, @Nullable ApiInfo apiInfo) {
+
+            if (apiInfo == null
+                    || (!apiInfo.hasSince() && !apiInfo.hasDeprecated())) {
+                return;
+            }
+
+            final JavadocComment comment = node.getJavadocComment().orElse(null);
+            final Range range = comment != null
+                    ? comment.getRange().orElse(null)
+                    : ((Node) node).getRange().orElse(null);
+            if (range == null) {
+                return;
+            }
+
+            final int begin = offset(range.begin);
+            final String indent = indent(begin);
+
+            final StringBuilder builder = new StringBuilder();
+
+            if (comment != null) {
+                // `end` points to the last character of the comment
+                final int end = offset(range.end) + 1;
+                // keep comment content, but move closing `*/` to the own line after the tags
+                int start = end - 2;
+                while (start > begin + 3 && Character.isWhitespace(source.charAt(start - 1))) {
+                    start -= 1;
+                }
+                tags(builder, indent, apiInfo);
+                builder.append(lineSeparator)
+                        .append(indent)
+                        .append(" */");
+                edits.add(new Edit(start, end, builder.toString()));
+            } else {
+                final boolean ownLine = isBlank(lines[range.begin.line - 1], begin);
+                if (!ownLine) {
+                    builder.append(lineSeparator).append(indent);
+                }
+                builder.append("/**");
+                tags(builder, indent, apiInfo);
+                builder.append(lineSeparator)
+                        .append(indent)
+                        .append(" */")
+                        .append(lineSeparator)
+                        .append(indent);
+                edits.add(new Edit(begin, begin, builder.toString()));
+            }
+        }
+
+        private void tags(@Nonnull StringBuilder builder, @Nonnull String indent, @Nonnull ApiInfo apiInfo) {
+            if (apiInfo.hasSince()) {
+                builder.append(lineSeparator)
+                        .append(indent)
+                        .append(" * @since ")
+                        .append(formatter.format(apiInfo.since));
+            }
+            if (apiInfo.hasDeprecated()) {
+                builder.append(lineSeparator)
+                        .append(indent)
+                        .append(" * @deprecated ")
+                        .append(formatter.format(apiInfo.deprecated));
+            }
+        }
+
+        private int offset(@Nonnull Position position) {
+            // both line and column start at 1, tab counts as a single column
+            return lines[position.line - 1] + position.column - 1;
+        }
+
+        // leading whitespace of the line that contains offset
+        @Nonnull
+        private String indent(int offset) {
+            int start = offset;
+            while (start > 0 && source.charAt(start - 1) != '\n' && source.charAt(start - 1) != '\r') {
+                start -= 1;
+            }
+            int end = start;
+            while (end < offset && (source.charAt(end) == ' ' || source.charAt(end) == '\t')) {
+                end += 1;
+            }
+            return source.subSequence(start, end).toString();
+        }
+
+        private boolean isBlank(int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (!Character.isWhitespace(source.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Nonnull
+        private static String lineSeparator(@Nonnull CharSequence source) {
+            for (int i = 0, length = source.length(); i < length; i++) {
+                if (source.charAt(i) == '\n') {
+                    return i > 0 && source.charAt(i - 1) == '\r'
+                            ? "\r\n"
+                            : "\n";
+                }
+            }
+            return "\n";
+        }
+
+        // offsets of line starts, line terminators are the same as javaparser uses: `\n`, `\r\n` and `\r`
+        @Nonnull
+        private static int[] lines(@Nonnull CharSequence source) {
+            int[] lines = new int[128];
+            int count = 1;
+            for (int i = 0, length = source.length(); i < length; i++) {
+                final char c = source.charAt(i);
+                if (c == '\n'
+                        || (c == '\r' && (i + 1 == length || source.charAt(i + 1) != '\n'))) {
+                    if (count == lines.length) {
+                        lines = Arrays.copyOf(lines, count * 2);
+                    }
+                    lines[count++] = i + 1;
+                }
+            }
+            return lines;
+        }
+
+        private static class Edit {
+
+            final int start;
+            final int end;
+            final String text;
+
+            Edit(int start, int end, @Nonnull String text) {
+                this.start = start;
+                this.end = end;
+                this.text = text;
+            }
+        }
+    }
+
     // Unfortunately java-parser printer is a little weird and does not give enough options
     //  to format the code
 //    @Nonnull
@@ -315,63 +955,154 @@ class EnhanceWriterImpl extends EnhanceWriter {
 
     private static class Parser11 implements Parser {
 
-        private final JavaParser javaParser11 = new JavaParser(new ParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_11));
+        protected final JavaParser javaParser11 = new JavaParser(new ParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_11));
 
         @Nonnull
         @Override
-        public CompilationUnit parse(@Nonnull File file) {
-            return parse(javaParser11, file);
+        public CompilationUnit parse(@Nonnull CharSequence source, @Nonnull AtomicInteger fallbacks) {
+            return parse(javaParser11, source);
         }
 
         @Nonnull
-        protected static CompilationUnit parse(@Nonnull JavaParser javaParser, @Nonnull File file) {
+        protected static CompilationUnit parse(@Nonnull JavaParser javaParser, @Nonnull CharSequence source) {
             final CompilationUnit unit;
-            try {
-                final ParseResult<CompilationUnit> result = javaParser.parse(file);
-                if (result.isSuccessful()) {
-                    //noinspection OptionalGetWithoutIsPresent
-                    unit = result.getResult().get();
-                } else {
-                    throw new RuntimeException(result.toString());
-                }
-            } catch (FileNotFoundException e) {
-                throw new RuntimeException(e);
+            final ParseResult<CompilationUnit> result = javaParser.parse(ParseStart.COMPILATION_UNIT, provider(source));
+            if (result.isSuccessful()) {
+                //noinspection OptionalGetWithoutIsPresent
+                unit = result.getResult().get();
+            } else {
+                throw new RuntimeException(result.toString());
             }
             return unit;
         }
+
+        // reads the source without copying it into a String (or a Reader buffer)
+        @Nonnull
+        private static Provider provider(@Nonnull CharSequence source) {
+            final CharBuffer buffer = CharBuffer.wrap(source);
+            return new Provider() {
+                @Override
+                public int read(char[] chars, int offset, int length) {
+                    if (!buffer.hasRemaining()) {
+                        return -1;
+                    }
+                    final int count = Math.min(length, buffer.remaining());
+                    buffer.get(chars, offset, count);
+                    return count;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
     }
 
     // Android 34 should have been compiled with Java-17, but some sources
-    //  contain java-17 keywords: `sealed` and `permits` as variable names
-    private static class Parser17 extends Parser11 {
+    //  contain java-17 keywords: `sealed` and `permits` as variable names.
+    //  Package-private for tests
+    static class Parser17 extends Parser11 {
 
         private final JavaParser javaParser17 = new JavaParser(new ParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17));
 
         @Nonnull
         @Override
-        public CompilationUnit parse(@Nonnull File file) {
+        public CompilationUnit parse(@Nonnull CharSequence source, @Nonnull AtomicInteger fallbacks) {
+
+            // a file that mentions `sealed` or `permits` in code most likely uses them as
+            //  variable names (java-11), otherwise java-17 is tried first. If the guess is wrong
+            //  the other language level is used
+            final boolean java11 = hasRestrictedIdentifiers(source);
 
-            // first try parsing with java-17 and then fallback to java-11
-            //  this is done because, even though android-34 should be compiled with java-17
-            //  there are classes that contain illegal variable names: `sealed` and `permits`
-            CompilationUnit compilationUnit = null;
             try {
-                compilationUnit = parse(javaParser17, file);
-            } catch (Throwable t) {
-                log("[Enhance] Exception parsing with java-17");
-                //noinspection CallToPrintStackTrace
-                t.printStackTrace();
+                return parse(java11 ? javaParser11 : javaParser17, source);
+            } catch (RuntimeException e) {
+                fallbacks.incrementAndGet();
+                return parse(java11 ? javaParser17 : javaParser11, source);
+            }
+        }
+
+        // lexical scan for `sealed` and `permits` outside of comments and literals
+        static boolean hasRestrictedIdentifiers(@Nonnull CharSequence source) {
+
+            final int length = source.length();
+
+            int i = 0;
+
+            while (i < length) {
+
+                final char c = source.charAt(i);
+
+                if (c == '/' && i + 1 < length && source.charAt(i + 1) == '/') {
+                    i = indexOf(source, "\n", i);
+                    if (i < 0) {
+                        return false;
+                    }
+                } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '*') {
+                    i = indexOf(source, "*/", i + 2);
+                    if (i < 0) {
+                        return false;
+                    }
+                    i += 2;
+                } else if (c == '"' && startsWith(source, "\"\"\"", i)) {
+                    i = indexOf(source, "\"\"\"", i + 3);
+                    if (i < 0) {
+                        return false;
+                    }
+                    i += 3;
+                } else if (c == '"' || c == '\'') {
+                    i += 1;
+                    while (i < length && source.charAt(i) != c) {
+                        // skip escaped character
+                        i += source.charAt(i) == '\\' ? 2 : 1;
+                    }
+                    i += 1;
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    final int start = i;
+                    i += 1;
+                    while (i < length && Character.isJavaIdentifierPart(source.charAt(i))) {
+                        i += 1;
+                    }
+                    if (isRestricted(source, start, i)) {
+                        return true;
+                    }
+                } else {
+                    i += 1;
+                }
             }
 
-            if (compilationUnit == null) {
-                compilationUnit = super.parse(file);
+            return false;
+        }
+
+        private static boolean isRestricted(@Nonnull CharSequence source, int start, int end) {
+            final int length = end - start;
+            return (length == 6 && startsWith(source, "sealed", start))
+                    || (length == 7 && startsWith(source, "permits", start));
+        }
+
+        private static boolean startsWith(@Nonnull CharSequence source, @Nonnull String prefix, int start) {
+            if (start + prefix.length() > source.length()) {
+                return false;
+            }
+            for (int i = 0, length = prefix.length(); i < length; i++) {
+                if (source.charAt(start + i) != prefix.charAt(i)) {
+                    return false;
+                }
             }
+            return true;
+        }
 
-            return compilationUnit;
+        private static int indexOf(@Nonnull CharSequence source, @Nonnull String str, int start) {
+            for (int i = start, last = source.length() - str.length(); i <= last; i++) {
+                if (startsWith(source, str, i)) {
+                    return i;
+                }
+            }
+            return -1;
         }
     }
 
-    @Nullable
+    @Nonnull
     private static SourceFormatter sourceFormatter(@Nonnull SourceFormat format) {
 
         final SourceFormatter sourceFormatter;
@@ -387,7 +1118,7 @@ class EnhanceWriterImpl extends EnhanceWriter {
                 break;
 
             default:
-                sourceFormatter = null;
+                throw new IllegalStateException("Unexpected format: " + format);
         }
 
         return sourceFormatter;
@@ -0,0 +1,195 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * UTF-8 file reads and writes through buffers that are reused by the calling thread, so processing
+ * a file does not allocate byte arrays and strings of its size. Returned buffers are valid only
+ * until the next call of the same method on the same thread.
+ * <p>
+ * Malformed input is replaced with U+FFFD, the same as javaparser did when it read files itself
+ * ({@link java.io.InputStreamReader}). Sources are UTF-8, a file in a different encoding loses its
+ * non-ASCII characters only if api info is applied to it, otherwise it is copied as is.
+ */
+abstract class FileBuffers {
+
+    // larger buffers are not kept, so a few big files do not hold memory of each thread
+    private static final int RETAINED = 512 * 1024;
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    /**
+     * @return decoded contents of the file
+     */
+    @Nonnull
+    static CharBuffer read(@Nonnull File file) throws IOException {
+        final Buffers buffers = BUFFERS.get();
+        final CharBuffer chars = read(file, buffers.decoded);
+        if (chars.capacity() <= RETAINED) {
+            buffers.decoded = chars;
+        }
+        return chars;
+    }
+
+    /**
+     * Same as {@link #read(File)}, but decodes into the specified buffer, which is owned by the caller
+     *
+     * @return decoded contents of the file, in the specified buffer or a larger one, if it is too small
+     */
+    @Nonnull
+    static CharBuffer read(@Nonnull File file, @Nonnull CharBuffer into) throws IOException {
+        final Buffers buffers = BUFFERS.get();
+        final ByteBuffer bytes = buffers.bytes(file, buffers.read);
+        if (bytes.capacity() <= RETAINED) {
+            buffers.read = bytes;
+        }
+
+        final CharsetDecoder decoder = buffers.decoder.reset();
+        final int expected = (int) (bytes.remaining() * (double) decoder.averageCharsPerByte()) + 16;
+        CharBuffer chars = into.capacity() < expected
+                ? CharBuffer.allocate(expected)
+                : into;
+        chars.clear();
+        while (true) {
+            CoderResult result = decoder.decode(bytes, chars, true);
+            if (result.isUnderflow()) {
+                result = decoder.flush(chars);
+            }
+            if (result.isUnderflow()) {
+                break;
+            }
+            if (result.isOverflow()) {
+                final CharBuffer grown = CharBuffer.allocate(chars.capacity() * 2 + 16);
+                chars.flip();
+                grown.put(chars);
+                chars = grown;
+            } else {
+                result.throwException();
+            }
+        }
+        chars.flip();
+        return chars;
+    }
+
+    /**
+     * @return contents of the file
+     */
+    @Nonnull
+    static ByteBuffer bytes(@Nonnull File file) throws IOException {
+        final Buffers buffers = BUFFERS.get();
+        final ByteBuffer bytes = buffers.bytes(file, buffers.current);
+        if (bytes.capacity() <= RETAINED) {
+            buffers.current = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Unmappable characters (lone surrogates) are replaced with `?`, as {@link String#getBytes(java.nio.charset.Charset)} does
+     *
+     * @return encoded contents
+     */
+    @Nonnull
+    static ByteBuffer encode(@Nonnull CharSequence contents) throws CharacterCodingException {
+        final Buffers buffers = BUFFERS.get();
+        final CharsetEncoder encoder = buffers.encoder.reset();
+        final CharBuffer chars = CharBuffer.wrap(contents);
+
+        ByteBuffer bytes = buffers.encoded;
+        final int expected = (int) (contents.length() * (double) encoder.averageBytesPerChar()) + 16;
+        if (bytes.capacity() < expected) {
+            bytes = ByteBuffer.allocate(expected);
+        }
+        bytes.clear();
+
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, true);
+            if (result.isUnderflow()) {
+                result = encoder.flush(bytes);
+            }
+            if (result.isUnderflow()) {
+                break;
+            }
+            if (result.isOverflow()) {
+                final ByteBuffer grown = ByteBuffer.allocate(bytes.capacity() * 2);
+                bytes.flip();
+                grown.put(bytes);
+                bytes = grown;
+            } else {
+                result.throwException();
+            }
+        }
+
+        if (bytes.capacity() <= RETAINED) {
+            buffers.encoded = bytes;
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    /**
+     * Writes the contents to the file (created or truncated)
+     */
+    static void write(@Nonnull File file, @Nonnull ByteBuffer contents) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = contents.duplicate();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static class Buffers {
+
+        final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        // read source file, current file (to compare with) and encoded output
+        ByteBuffer read = ByteBuffer.allocate(0);
+        ByteBuffer current = ByteBuffer.allocate(0);
+        ByteBuffer encoded = ByteBuffer.allocate(0);
+
+        CharBuffer decoded = CharBuffer.allocate(0);
+
+        @Nonnull
+        ByteBuffer bytes(@Nonnull File file, @Nonnull ByteBuffer buffer) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                final long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("File is too big: " + file.getPath());
+                }
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate((int) size);
+                }
+                buffer.clear().limit((int) size);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                return buffer;
+            }
+        }
+    }
+
+    private FileBuffers() {
+    }
+}
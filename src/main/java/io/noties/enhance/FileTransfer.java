@@ -0,0 +1,50 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * NIO based file operations, file contents are transferred by the file system (without
+ * passing bytes through java heap). Destination files are always replaced (never written into),
+ * so a hard link to another file is not modified.
+ */
+abstract class FileTransfer {
+
+    /**
+     * Copies file contents and last modified time. Permissions are not copied: a copy of a
+     * read-only stored file (see {@link BackupStore}) is writable
+     */
+    static void copy(@Nonnull File source, @Nonnull File destination) throws IOException {
+        final Path from = source.toPath();
+        final Path to = destination.toPath();
+        Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(to, Files.getLastModifiedTime(from));
+    }
+
+    /**
+     * Creates a hard link at the destination, fails if source and destination are on different file systems
+     */
+    static void link(@Nonnull File source, @Nonnull File destination) throws IOException {
+        final Path path = destination.toPath();
+        Files.deleteIfExists(path);
+        Files.createLink(path, source.toPath());
+    }
+
+    /**
+     * @return if hard links can be created at the destination folder pointing to the files in the source folder
+     */
+    static boolean isSameFileStore(@Nonnull File source, @Nonnull File destination) {
+        try {
+            return Files.getFileStore(source.toPath()).equals(Files.getFileStore(destination.toPath()));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private FileTransfer() {
+    }
+}
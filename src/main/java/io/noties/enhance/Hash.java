@@ -0,0 +1,58 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+abstract class Hash {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * @return hex representation of SHA-256 digest of the file contents
+     */
+    @Nonnull
+    static String sha256(@Nonnull File file) throws IOException {
+
+        final MessageDigest digest = sha256();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) > -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return hex(digest.digest());
+    }
+
+    @Nonnull
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be supported by every java platform
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Nonnull
+    static String hex(@Nonnull byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0, length = bytes.length; i < length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private Hash() {
+    }
+}
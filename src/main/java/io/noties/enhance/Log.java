@@ -1,12 +1,254 @@
 package io.noties.enhance;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Messages are formatted only if their level is enabled and are written to the standard
+ * output by a background thread (calling threads do not wait for console I/O).
+ * A single status line (progress) can be displayed below the messages, it is redrawn in place
+ * when console is interactive.
+ */
 public abstract class Log {
 
+    /**
+     * Receives messages and status changes in addition to the standard output. Called on the logging thread
+     */
+    interface Listener {
+
+        void message(@Nonnull String message);
+
+        /**
+         * @param status `null` if status line is removed
+         */
+        void status(@Nullable String status);
+    }
+
+    public enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR
+    }
+
+    private static volatile Level level = Level.INFO;
+
+    private static final Appender APPENDER = new Appender();
+
+    public static void level(@Nonnull Level level) {
+        Log.level = level;
+    }
+
+    public static boolean isEnabled(@Nonnull Level level) {
+        return level.ordinal() >= Log.level.ordinal();
+    }
+
+    public static void debug(@Nonnull String msg, Object... args) {
+        log(Level.DEBUG, msg, args);
+    }
+
     public static void log(@Nonnull String msg, Object... args) {
-        System.out.printf(msg, args);
-        System.out.println();
+        log(Level.INFO, msg, args);
+    }
+
+    public static void warn(@Nonnull String msg, Object... args) {
+        log(Level.WARN, msg, args);
+    }
+
+    public static void error(@Nonnull String msg, Object... args) {
+        log(Level.ERROR, msg, args);
+    }
+
+    public static void log(@Nonnull Level level, @Nonnull String msg, Object... args) {
+        if (isEnabled(level)) {
+            APPENDER.append(args.length == 0 ? msg : String.format(msg, args));
+        }
+    }
+
+    /**
+     * Sets status line, `null` removes it. Status is displayed only if console is interactive
+     */
+    static void status(@Nullable String status) {
+        APPENDER.status(status);
+    }
+
+    /**
+     * @param listener receives messages logged after this call, `null` to remove
+     */
+    static void listener(@Nullable Listener listener) {
+        APPENDER.listener.set(listener);
+    }
+
+    /**
+     * Blocks until all messages that were logged before this call are written
+     */
+    public static void flush() {
+        APPENDER.flush(0L);
+    }
+
+    private static class Appender implements Runnable {
+
+        private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+
+        private final boolean interactive = System.console() != null;
+
+        private final Object lock = new Object();
+
+        // guarded by lock
+        private long appended;
+        private long written;
+
+        private volatile String status;
+
+        private final AtomicReference<Listener> listener = new AtomicReference<>();
+
+        // only accessed by the appender thread
+        private String displayedStatus;
+        private String forwardedStatus;
+
+        Appender() {
+            final Thread thread = new Thread(this, "enhance-log");
+            thread.setDaemon(true);
+            thread.start();
+
+            // messages logged right before exit (or an uncaught exception) should not be lost
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(TimeUnit.SECONDS.toMillis(1))));
+        }
+
+        void append(@Nonnull String message) {
+            synchronized (lock) {
+                appended += 1;
+                // added under lock, so messages keep order of the counter
+                queue.add(message);
+            }
+        }
+
+        void status(@Nullable String status) {
+            this.status = status;
+        }
+
+        void flush(long timeout) {
+            final long deadline = System.currentTimeMillis() + timeout;
+            synchronized (lock) {
+                final long target = appended;
+                while (written < target) {
+                    if (timeout > 0L && System.currentTimeMillis() >= deadline) {
+                        return;
+                    }
+                    try {
+                        lock.wait(50L);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+
+            final Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), Charset.defaultCharset()),
+                    64 * 1024
+            );
+
+            //noinspection InfiniteLoopStatement
+            while (true) {
+
+                long count = 0L;
+
+                try {
+                    String message = queue.poll(100L, TimeUnit.MILLISECONDS);
+
+                    Listener listener = this.listener.get();
+
+                    if (message != null) {
+                        clearStatus(writer);
+                        while (message != null) {
+                            count += 1;
+                            writer.write(message);
+                            writer.write('\n');
+                            if (listener != null) {
+                                try {
+                                    listener.message(message);
+                                } catch (RuntimeException e) {
+                                    detach(listener, e, writer);
+                                    listener = null;
+                                }
+                            }
+                            message = queue.poll();
+                        }
+                    }
+
+                    // status is displayed only on an interactive console
+                    final String status = this.status;
+                    if (interactive) {
+                        if (status != null && !status.equals(displayedStatus)) {
+                            clearStatus(writer);
+                            writer.write(status);
+                            displayedStatus = status;
+                        } else if (status == null) {
+                            clearStatus(writer);
+                        }
+                    }
+
+                    if (listener != null && !Objects.equals(status, forwardedStatus)) {
+                        try {
+                            listener.status(status);
+                            forwardedStatus = status;
+                        } catch (RuntimeException e) {
+                            detach(listener, e, writer);
+                        }
+                    }
+
+                    writer.flush();
+
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    // nowhere to report
+                } finally {
+                    if (count > 0L) {
+                        synchronized (lock) {
+                            written += count;
+                            lock.notifyAll();
+                        }
+                    }
+                }
+            }
+        }
+
+        // a failing listener is removed, this thread must keep running (`flush` would block forever otherwise)
+        private void detach(@Nonnull Listener listener, @Nonnull RuntimeException e, @Nonnull Writer writer) throws IOException {
+            this.listener.compareAndSet(listener, null);
+            clearStatus(writer);
+            writer.write("[Enhance] log listener has failed and is removed: " + e + '\n');
+        }
+
+        private void clearStatus(@Nonnull Writer writer) throws IOException {
+            final String displayed = displayedStatus;
+            if (displayed != null) {
+                writer.write('\r');
+                for (int i = 0, length = displayed.length(); i < length; i++) {
+                    writer.write(' ');
+                }
+                writer.write('\r');
+                displayedStatus = null;
+            }
+        }
     }
 
     private Log() {
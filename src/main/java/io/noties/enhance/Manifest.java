@@ -0,0 +1,206 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records results of a run: for each processed file hash of its source, length and modification time
+ * of the produced output.
+ * Entries are valid only as long as `inputs` (tool version, source format, api-versions.xml hash) stay the same.
+ * Thread-safe
+ */
+class Manifest {
+
+    private static final String HEADER = "# enhance manifest";
+    private static final String INPUTS = "inputs ";
+
+    @Nonnull
+    static Manifest load(@Nonnull File file, @Nonnull String inputs) {
+
+        final Map<String, Entry> previous = new HashMap<>();
+
+        if (file.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                if (HEADER.equals(reader.readLine())
+                        && (INPUTS + inputs).equals(reader.readLine())) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        final String[] values = line.split("\t");
+                        if (values.length == 6) {
+                            previous.put(values[0], new Entry(
+                                    Long.parseLong(values[1]),
+                                    Long.parseLong(values[2]),
+                                    values[3],
+                                    Long.parseLong(values[4]),
+                                    Long.parseLong(values[5])
+                            ));
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // corrupted manifest, all files would be processed
+                previous.clear();
+            }
+        }
+
+        return new Manifest(file, inputs, previous);
+    }
+
+    @Nonnull
+    static Manifest empty(@Nonnull File file, @Nonnull String inputs) {
+        return new Manifest(file, inputs, Collections.emptyMap());
+    }
+
+    private final File file;
+    private final String inputs;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // hashes of changed sources computed by the check, reused when they are recorded
+    private final Map<String, String> hashes = new ConcurrentHashMap<>();
+
+    private Manifest(@Nonnull File file, @Nonnull String inputs, @Nonnull Map<String, Entry> previous) {
+        this.file = file;
+        this.inputs = inputs;
+        this.previous = previous;
+    }
+
+    /**
+     * @return if there is nothing recorded from the previous run
+     */
+    boolean isEmpty() {
+        return previous.isEmpty();
+    }
+
+    /**
+     * @return `true` if the destination was produced from the same source during previous run
+     * (and had not been modified since: same length and modification time), in this case it is
+     * kept in this manifest
+     */
+    boolean isUpToDate(@Nonnull String path, @Nonnull File source, @Nonnull File destination) {
+
+        Entry entry = previous.get(path);
+        if (entry == null) {
+            return false;
+        }
+
+        if (!destination.exists()
+                || destination.length() != entry.outputLength
+                || destination.lastModified() != entry.outputModified
+                || source.length() != entry.sourceLength) {
+            return false;
+        }
+
+        // backup files are not expected to change, so hash is checked only if modification time differs
+        final long modified = source.lastModified();
+        if (modified != entry.sourceModified) {
+            final String hash = hash(source);
+            if (!hash.equals(entry.sourceHash)) {
+                hashes.put(path, hash);
+                return false;
+            }
+            entry = new Entry(entry.sourceLength, modified, hash, entry.outputLength, entry.outputModified);
+        }
+
+        entries.put(path, entry);
+
+        return true;
+    }
+
+    void record(@Nonnull String path, @Nonnull File source, @Nonnull File destination) {
+
+        final long length = source.length();
+        final long modified = source.lastModified();
+
+        // hash is computed only if the check has not done it (or could skip it, as modification time is the same)
+        String hash = hashes.remove(path);
+        if (hash == null) {
+            final Entry entry = previous.get(path);
+            hash = entry != null && entry.sourceLength == length && entry.sourceModified == modified
+                    ? entry.sourceHash
+                    : hash(source);
+        }
+
+        entries.put(path, new Entry(
+                length,
+                modified,
+                hash,
+                destination.length(),
+                destination.lastModified()
+        ));
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    void save() throws IOException {
+
+        final List<String> paths = new ArrayList<>(entries.keySet());
+        Collections.sort(paths);
+
+        final File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.write('\n');
+            writer.write(INPUTS);
+            writer.write(inputs);
+            writer.write('\n');
+            for (String path : paths) {
+                final Entry entry = entries.get(path);
+                writer.write(path);
+                writer.write('\t');
+                writer.write(Long.toString(entry.sourceLength));
+                writer.write('\t');
+                writer.write(Long.toString(entry.sourceModified));
+                writer.write('\t');
+                writer.write(entry.sourceHash);
+                writer.write('\t');
+                writer.write(Long.toString(entry.outputLength));
+                writer.write('\t');
+                writer.write(Long.toString(entry.outputModified));
+                writer.write('\n');
+            }
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Nonnull
+    private static String hash(@Nonnull File file) {
+        try {
+            return Hash.sha256(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read file: " + file.getPath(), e);
+        }
+    }
+
+    private static class Entry {
+
+        final long sourceLength;
+        final long sourceModified;
+        final String sourceHash;
+        final long outputLength;
+        final long outputModified;
+
+        Entry(long sourceLength, long sourceModified, @Nonnull String sourceHash, long outputLength, long outputModified) {
+            this.sourceLength = sourceLength;
+            this.sourceModified = sourceModified;
+            this.sourceHash = sourceHash;
+            this.outputLength = outputLength;
+            this.outputModified = outputModified;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+/**
+ * Obtains declared package of a java source file without parsing it. Only the beginning
+ * of a file is read, comments before the package declaration are skipped.
+ */
+abstract class PackageScanner {
+
+    // license headers are expected to fit
+    private static final int LIMIT = 16 * 1024;
+
+    /**
+     * @return declared package (empty string for the default package) or `null` if package
+     * cannot be determined (for example, package declaration has annotations)
+     */
+    @Nullable
+    static String scan(@Nonnull File file) throws IOException {
+        final byte[] bytes;
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            bytes = inputStream.readNBytes(LIMIT);
+        }
+        return scan(bytes, bytes.length);
+    }
+
+    @Nullable
+    static String scan(@Nonnull byte[] bytes, int length) {
+
+        int i = 0;
+
+        // UTF-8 BOM
+        if (length >= 3
+                && (bytes[0] & 0xFF) == 0xEF
+                && (bytes[1] & 0xFF) == 0xBB
+                && (bytes[2] & 0xFF) == 0xBF) {
+            i = 3;
+        }
+
+        i = skip(bytes, length, i);
+        if (i < 0) {
+            return null;
+        }
+
+        final int keyword = identifier(bytes, length, i);
+        if (keyword < 0) {
+            // anything else (including annotations) requires parsing
+            return null;
+        }
+
+        if (!is(bytes, i, keyword, "package")) {
+            // no package declaration
+            return "";
+        }
+
+        final StringBuilder builder = new StringBuilder();
+
+        i = keyword;
+
+        while (true) {
+
+            i = skip(bytes, length, i);
+            if (i < 0) {
+                return null;
+            }
+
+            final int end = identifier(bytes, length, i);
+            if (end < 0) {
+                return null;
+            }
+
+            for (int j = i; j < end; j++) {
+                builder.append((char) bytes[j]);
+            }
+
+            i = skip(bytes, length, end);
+            if (i < 0) {
+                return null;
+            }
+
+            if (bytes[i] == ';') {
+                return builder.toString();
+            }
+
+            if (bytes[i] != '.') {
+                return null;
+            }
+
+            builder.append('.');
+            i += 1;
+        }
+    }
+
+    // skips whitespace and comments, returns -1 if end of input is reached
+    private static int skip(@Nonnull byte[] bytes, int length, int i) {
+        while (i < length) {
+            final byte b = bytes[i];
+            if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f') {
+                i += 1;
+            } else if (b == '/' && i + 1 < length && bytes[i + 1] == '/') {
+                while (i < length && bytes[i] != '\n' && bytes[i] != '\r') {
+                    i += 1;
+                }
+            } else if (b == '/' && i + 1 < length && bytes[i + 1] == '*') {
+                i += 2;
+                while (i + 1 < length && !(bytes[i] == '*' && bytes[i + 1] == '/')) {
+                    i += 1;
+                }
+                if (i + 1 >= length) {
+                    return -1;
+                }
+                i += 2;
+            } else {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // returns end of ASCII identifier that starts at `i` or -1
+    private static int identifier(@Nonnull byte[] bytes, int length, int i) {
+        if (i >= length || !isIdentifierStart(bytes[i])) {
+            return -1;
+        }
+        int end = i + 1;
+        while (end < length && isIdentifierPart(bytes[end])) {
+            end += 1;
+        }
+        // non-ASCII identifier
+        if (end < length && bytes[end] < 0) {
+            return -1;
+        }
+        return end;
+    }
+
+    private static boolean is(@Nonnull byte[] bytes, int start, int end, @Nonnull String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (bytes[i] != value.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIdentifierStart(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_' || b == '$';
+    }
+
+    private static boolean isIdentifierPart(byte b) {
+        return isIdentifierStart(b) || (b >= '0' && b <= '9');
+    }
+
+    private PackageScanner() {
+    }
+}
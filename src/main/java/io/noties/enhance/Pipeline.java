@@ -0,0 +1,321 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.noties.enhance.Log.log;
+
+/**
+ * Items pass a chain of stages, each stage has own worker threads. Stages are connected
+ * with bounded queues, so a fast stage blocks (instead of piling up items in memory)
+ * when the next one cannot keep up. Time workers spend busy, waiting for input and
+ * blocked on a full output queue is recorded for the {@link #report()}.
+ * <p>
+ * Workers can run on threads of an executor that outlives the pipeline, so thread-local state
+ *  (parsers, formatters) is kept between runs. Such an executor must start a thread for each
+ *  worker (workers block on queues), for example a cached thread pool
+ */
+abstract class Pipeline<T> {
+
+    interface Step<T> {
+
+        /**
+         * @return false if item is done and must not be passed to the next stage
+         */
+        boolean process(@Nonnull T item) throws Exception;
+    }
+
+    @Nonnull
+    static <T> Pipeline<T> create() {
+        return create(null);
+    }
+
+    /**
+     * @param executor runs workers of all stages, `null` to start a thread for each worker
+     */
+    @Nonnull
+    static <T> Pipeline<T> create(@Nullable Executor executor) {
+        return new Impl<>(executor != null ? executor : Impl::start);
+    }
+
+    @Nonnull
+    abstract Pipeline<T> stage(@Nonnull String name, int workers, @Nonnull Step<T> step);
+
+    /**
+     * Blocks until all items have passed all stages. The first failure of a step
+     * stops all stages and is re-thrown
+     */
+    abstract void run(@Nonnull Iterable<T> items);
+
+    /**
+     * Logs utilization of each stage of the last run
+     */
+    abstract void report();
+
+
+    private static class Impl<T> extends Pipeline<T> {
+
+        // queue capacity for each worker of the consuming stage
+        private static final int CAPACITY = 4;
+
+        private static final Object END = new Object();
+
+        private final Executor executor;
+
+        private final List<Stage<T>> stages = new ArrayList<>();
+
+        // threads that are running workers, guarded by itself
+        private final Set<Thread> threads = new HashSet<>();
+
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private Thread caller;
+
+        private long elapsed;
+
+        Impl(@Nonnull Executor executor) {
+            this.executor = executor;
+        }
+
+        @Nonnull
+        @Override
+        Pipeline<T> stage(@Nonnull String name, int workers, @Nonnull Step<T> step) {
+            if (workers < 1) {
+                throw new IllegalArgumentException("Stage `" + name + "` must have at least 1 worker, was: " + workers);
+            }
+            final Stage<T> stage = new Stage<>(name, workers, step);
+            if (!stages.isEmpty()) {
+                stages.get(stages.size() - 1).next = stage;
+            }
+            stages.add(stage);
+            return this;
+        }
+
+        @Override
+        void run(@Nonnull Iterable<T> items) {
+
+            if (stages.isEmpty()) {
+                throw new IllegalStateException("Pipeline has no stages");
+            }
+
+            caller = Thread.currentThread();
+
+            int workers = 0;
+            for (Stage<T> stage : stages) {
+                workers += stage.workers;
+            }
+
+            final CountDownLatch done = new CountDownLatch(workers);
+
+            final long start = System.nanoTime();
+
+            for (Stage<T> stage : stages) {
+                for (int i = 0; i < stage.workers; i++) {
+                    final String name = "enhance-" + stage.name + "-" + (i + 1);
+                    executor.execute(() -> {
+                        try {
+                            work(stage, name);
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                }
+            }
+
+            final Stage<T> first = stages.get(0);
+            try {
+                for (T item : items) {
+                    if (failure.get() != null) {
+                        break;
+                    }
+                    first.input.put(item);
+                }
+                first.end();
+            } catch (InterruptedException e) {
+                // a stage has failed
+                fail(e);
+            }
+
+            await(done);
+
+            // a failing stage could have interrupted this thread after it had been done waiting
+            //noinspection ResultOfMethodCallIgnored
+            Thread.interrupted();
+
+            elapsed = System.nanoTime() - start;
+
+            final Throwable throwable = failure.get();
+            if (throwable instanceof RuntimeException) {
+                throw (RuntimeException) throwable;
+            }
+            if (throwable instanceof Error) {
+                throw (Error) throwable;
+            }
+            if (throwable != null) {
+                throw new RuntimeException(throwable);
+            }
+        }
+
+        @Override
+        void report() {
+
+            log("[Enhance] pipeline stages (share of workers time):");
+
+            Stage<T> bottleneck = null;
+            double bottleneckBusy = 0D;
+
+            for (Stage<T> stage : stages) {
+                final double total = (double) elapsed * stage.workers;
+                final double busy = share(stage.busy, total);
+                log("[Enhance]   %-7s workers: %2d, items: %6d, busy: %3.0f%%, waiting for input: %3.0f%%, blocked on output: %3.0f%%",
+                        stage.name, stage.workers, stage.items.sum(),
+                        busy, share(stage.waiting, total), share(stage.blocked, total));
+                if (bottleneck == null || busy > bottleneckBusy) {
+                    bottleneck = stage;
+                    bottleneckBusy = busy;
+                }
+            }
+
+            if (bottleneck != null) {
+                log("[Enhance] pipeline bottleneck: %s (busy: %.0f%%)", bottleneck.name, bottleneckBusy);
+            }
+        }
+
+        private void work(@Nonnull Stage<T> stage, @Nonnull String name) {
+
+            final Thread thread = Thread.currentThread();
+            final String threadName = thread.getName();
+            thread.setName(name);
+
+            synchronized (threads) {
+                threads.add(thread);
+            }
+
+            try {
+                // started after a failure has interrupted the others
+                if (failure.get() != null) {
+                    return;
+                }
+
+                while (true) {
+
+                    final long waitStarted = System.nanoTime();
+                    final Object o = stage.input.take();
+                    final long started = System.nanoTime();
+                    stage.waiting.add(started - waitStarted);
+
+                    if (o == END) {
+                        break;
+                    }
+
+                    @SuppressWarnings("unchecked") final T item = (T) o;
+                    final boolean pass = stage.step.process(item);
+                    stage.items.increment();
+
+                    final long processed = System.nanoTime();
+                    stage.busy.add(processed - started);
+
+                    if (pass && stage.next != null) {
+                        stage.next.input.put(item);
+                        stage.blocked.add(System.nanoTime() - processed);
+                    }
+                }
+
+                // the last worker to finish tells each worker of the next stage to finish
+                if (stage.remaining.decrementAndGet() == 0 && stage.next != null) {
+                    stage.next.end();
+                }
+
+            } catch (InterruptedException e) {
+                // another stage has failed, failure is already recorded
+            } catch (Throwable t) {
+                fail(t);
+            } finally {
+                synchronized (threads) {
+                    threads.remove(thread);
+                }
+                // a pooled thread goes on with other tasks
+                //noinspection ResultOfMethodCallIgnored
+                Thread.interrupted();
+                thread.setName(threadName);
+            }
+        }
+
+        private void fail(@Nonnull Throwable throwable) {
+            if (failure.compareAndSet(null, throwable)) {
+                synchronized (threads) {
+                    for (Thread thread : threads) {
+                        thread.interrupt();
+                    }
+                }
+                if (caller != Thread.currentThread()) {
+                    caller.interrupt();
+                }
+            }
+        }
+
+        private static void await(@Nonnull CountDownLatch latch) {
+            while (true) {
+                try {
+                    latch.await();
+                    return;
+                } catch (InterruptedException e) {
+                    // interrupted by a failing stage, workers are stopping
+                }
+            }
+        }
+
+        private static void start(@Nonnull Runnable runnable) {
+            final Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private static double share(@Nonnull LongAdder nanos, double total) {
+            return total > 0D ? nanos.sum() * 100D / total : 0D;
+        }
+    }
+
+    private static class Stage<T> {
+
+        final String name;
+        final int workers;
+        final Step<T> step;
+
+        final BlockingQueue<Object> input;
+
+        final AtomicInteger remaining;
+
+        final LongAdder items = new LongAdder();
+        final LongAdder busy = new LongAdder();
+        final LongAdder waiting = new LongAdder();
+        final LongAdder blocked = new LongAdder();
+
+        Stage<T> next;
+
+        Stage(@Nonnull String name, int workers, @Nonnull Step<T> step) {
+            this.name = name;
+            this.workers = workers;
+            this.step = step;
+            this.input = new ArrayBlockingQueue<>(Impl.CAPACITY * workers);
+            this.remaining = new AtomicInteger(workers);
+        }
+
+        void end() throws InterruptedException {
+            for (int i = 0; i < workers; i++) {
+                input.put(Impl.END);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Refreshing status line with processed files, throughput and estimated time left.
+ * Workers only increment counters, the line is formatted periodically by a separate thread.
+ * There is a single status line, so progresses that are active at the same time (for example,
+ * multiple SDKs processed concurrently) are displayed together in it
+ */
+abstract class Progress {
+
+    @Nonnull
+    static Progress start(@Nonnull String name, int files, long bytes) {
+        return new Impl(name, files, bytes);
+    }
+
+    abstract void processed(long bytes);
+
+    /**
+     * Removes this progress from status line and logs its final numbers
+     */
+    abstract void stop();
+
+
+    private static class Impl extends Progress {
+
+        private static final long INTERVAL = 250L;
+
+        // started progresses that have not been stopped yet, in order of start
+        private static final List<Impl> ACTIVE = new ArrayList<>();
+
+        // refreshes status line while there are active progresses, guarded by ACTIVE
+        private static ScheduledExecutorService executor;
+
+        private final String name;
+        private final int files;
+        private final long bytes;
+
+        private final AtomicInteger processedFiles = new AtomicInteger();
+        private final AtomicLong processedBytes = new AtomicLong();
+
+        private final long start = System.nanoTime();
+
+        Impl(@Nonnull String name, int files, long bytes) {
+            this.name = name;
+            this.files = files;
+            this.bytes = bytes;
+            synchronized (ACTIVE) {
+                ACTIVE.add(this);
+                if (executor == null) {
+                    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        final Thread thread = new Thread(runnable, "enhance-progress");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.scheduleAtFixedRate(Impl::refresh, INTERVAL, INTERVAL, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        @Override
+        void processed(long bytes) {
+            processedFiles.incrementAndGet();
+            processedBytes.addAndGet(bytes);
+        }
+
+        @Override
+        void stop() {
+
+            final ScheduledExecutorService executor;
+            synchronized (ACTIVE) {
+                if (!ACTIVE.remove(this)) {
+                    return;
+                }
+                executor = ACTIVE.isEmpty() ? Impl.executor : null;
+                if (executor != null) {
+                    Impl.executor = null;
+                }
+            }
+
+            if (executor != null) {
+                executor.shutdownNow();
+                try {
+                    // an update that is running could display status again
+                    executor.awaitTermination(1L, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            // other progresses remain in the status line (or a new one could have been started)
+            refresh();
+            Log.log("[Enhance] " + line());
+        }
+
+        private static void refresh() {
+            synchronized (ACTIVE) {
+                if (ACTIVE.isEmpty()) {
+                    Log.status(null);
+                    return;
+                }
+                final StringBuilder builder = new StringBuilder("[Enhance] ");
+                for (int i = 0, size = ACTIVE.size(); i < size; i++) {
+                    if (i > 0) {
+                        builder.append(" | ");
+                    }
+                    builder.append(ACTIVE.get(i).line());
+                }
+                Log.status(builder.toString());
+            }
+        }
+
+        // without the prefix, so that multiple lines can be joined
+        @Nonnull
+        private String line() {
+
+            final int files = processedFiles.get();
+            final long bytes = processedBytes.get();
+
+            final double seconds = Math.max(1L, System.nanoTime() - start) / 1_000_000_000D;
+
+            final double bytesPerSecond = bytes / seconds;
+
+            final String eta;
+            if (bytes >= this.bytes) {
+                eta = "done";
+            } else if (bytesPerSecond > 0D) {
+                eta = "ETA " + time((long) ((this.bytes - bytes) / bytesPerSecond));
+            } else {
+                eta = "ETA --:--";
+            }
+
+            return String.format(
+                    Locale.US,
+                    "%s: %d/%d files, %.0f files/s, %.1f MB/s, %s",
+                    name,
+                    files,
+                    this.files,
+                    files / seconds,
+                    bytesPerSecond / (1024 * 1024),
+                    eta
+            );
+        }
+
+        @Nonnull
+        private static String time(long seconds) {
+            return String.format(Locale.US, "%02d:%02d", seconds / 60, seconds % 60);
+        }
+    }
+}
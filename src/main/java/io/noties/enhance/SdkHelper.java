@@ -8,8 +8,8 @@ import java.io.File;
 public abstract class SdkHelper {
 
     @Nonnull
-    public static SdkHelper create(@Nonnull EnhanceOptions options) {
-        return new Impl(options);
+    public static SdkHelper create(@Nonnull EnhanceOptions options, int sdk) {
+        return new Impl(options, sdk);
     }
 
     @Nonnull
@@ -29,7 +29,7 @@ public abstract class SdkHelper {
         private final File apiVersions;
         private final File source;
 
-        private Impl(@Nonnull EnhanceOptions options) {
+        private Impl(@Nonnull EnhanceOptions options, int sdk) {
 
             final File platforms = new File(options.androidSdkPath(), "platforms");
             final File sources = new File(options.androidSdkPath(), "sources");
@@ -42,7 +42,7 @@ public abstract class SdkHelper {
                 throw new IllegalStateException("Cannot find 'sources' folder at specified path: " + sources.getPath());
             }
 
-            folder = "android-" + options.sdk();
+            folder = "android-" + sdk;
 
             apiVersions = new File(platforms, folder + "/data/api-versions.xml");
 
@@ -52,7 +52,9 @@ public abstract class SdkHelper {
 
             source = new File(sources, folder);
 
-            if (!source.exists()) {
+            // previous run could have been interrupted while replacing the folder, it is restored
+            //  when the folder is processed (read-only usages do not need it)
+            if (!source.exists() && !StagedOutput.isInterrupted(source)) {
                 throw new IllegalStateException("Cannot find '" + folder + "' folder at specified path: " + source.getPath());
             }
         }
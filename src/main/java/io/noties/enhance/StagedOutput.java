@@ -0,0 +1,277 @@
+package io.noties.enhance;
+
+import org.apache.commons.io.FileUtils;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static io.noties.enhance.Log.log;
+import static io.noties.enhance.Log.warn;
+
+/**
+ * Output is written to a sibling staging folder, which replaces the target folder when all files
+ * are processed. Files that have the same contents as in the target folder are not re-written,
+ * but hard-linked (or copied with modification time), so their modification time stays the same.
+ * The target folder is not modified until {@link #commit()}. While an output exists the target
+ * is locked (with a lock file next to it), so other processes cannot use the same staging folder,
+ * the lock is released with {@link #close()}
+ */
+public abstract class StagedOutput implements Closeable {
+
+    /**
+     * @return if a previous run was interrupted while replacing the target folder, which is missing then.
+     * It is restored by {@link #create(File, boolean)}
+     */
+    public static boolean isInterrupted(@Nonnull File target) {
+        return !target.exists() && previous(target).exists();
+    }
+
+    // restores the target folder if previous run was interrupted while replacing it
+    //  and removes leftovers of the previous run, must be called with the lock held
+    private static void recover(@Nonnull File target) {
+        final File staging = staging(target);
+        final File previous = previous(target);
+        try {
+            if (!target.exists() && previous.exists()) {
+                log("[Enhance] restoring `%s` from `%s`", target.getPath(), previous.getPath());
+                Files.move(previous.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            if (previous.exists()) {
+                FileUtils.deleteDirectory(previous);
+            }
+            if (staging.exists()) {
+                FileUtils.deleteDirectory(staging);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot recover folder: " + target.getPath(), e);
+        }
+    }
+
+    /**
+     * @param link if files copied from a source should be hard-linked instead (if on the same file system)
+     */
+    @Nonnull
+    public static StagedOutput create(@Nonnull File target, boolean link) {
+        final FileChannel lock = lock(target);
+        try {
+            recover(target);
+            final File staging = staging(target);
+            if (!staging.mkdirs()) {
+                throw new RuntimeException("Cannot create staging folder: " + staging.getPath());
+            }
+            return new Impl(target, staging, link, lock);
+        } catch (RuntimeException e) {
+            release(lock);
+            throw e;
+        }
+    }
+
+    /**
+     * Folder that is going to be replaced
+     */
+    @Nonnull
+    public abstract File target();
+
+    /**
+     * Folder where output is written to
+     */
+    @Nonnull
+    public abstract File staging();
+
+    /**
+     * Keeps the current file (at the target folder) as the output
+     *
+     * @return `false` if there is no current file
+     */
+    public abstract boolean keep(@Nonnull File current, @Nonnull File destination) throws IOException;
+
+    /**
+     * @return `false` if contents are the same as in the current file, which is kept
+     */
+    public abstract boolean write(@Nonnull File current, @Nonnull File destination, @Nonnull CharSequence contents) throws IOException;
+
+    /**
+     * Copies (or links) the source, unless its contents are the same as in the current file
+     *
+     * @return `false` if contents of the source are the same as in the current file, which is kept
+     */
+    public abstract boolean copy(@Nonnull File current, @Nonnull File destination, @Nonnull File source) throws IOException;
+
+    /**
+     * Replaces the target folder with the staging one
+     */
+    public abstract void commit() throws IOException;
+
+    /**
+     * Releases the lock of the target folder, staging folder of an output that has not been
+     * committed is removed by the next run
+     */
+    @Override
+    public abstract void close();
+
+    @Nonnull
+    private static File staging(@Nonnull File target) {
+        return new File(target.getParentFile(), "." + target.getName() + ".staging");
+    }
+
+    @Nonnull
+    private static File previous(@Nonnull File target) {
+        return new File(target.getParentFile(), "." + target.getName() + ".previous");
+    }
+
+    // the file is kept, removing it would allow another process to lock a different file
+    @Nonnull
+    private static FileChannel lock(@Nonnull File target) {
+        final File file = new File(target.getParentFile(), "." + target.getName() + ".lock");
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot create lock file: " + file.getPath(), e);
+        }
+        boolean locked = false;
+        try {
+            locked = channel.tryLock() != null;
+        } catch (OverlappingFileLockException e) {
+            // locked by this process
+        } catch (IOException e) {
+            release(channel);
+            throw new RuntimeException("Cannot lock file: " + file.getPath(), e);
+        }
+        if (!locked) {
+            release(channel);
+            throw new IllegalStateException("Folder is being processed by another run: " + target.getPath()
+                    + " (locked with: " + file.getPath() + ")");
+        }
+        return channel;
+    }
+
+    // closing the channel releases its lock
+    private static void release(@Nonnull FileChannel lock) {
+        try {
+            lock.close();
+        } catch (IOException e) {
+            warn("[Enhance] cannot release lock: %s", e.getMessage());
+        }
+    }
+
+
+    private static class Impl extends StagedOutput {
+
+        private final File target;
+        private final File staging;
+        private final FileChannel lock;
+
+        // can be disabled, if file system does not support hard links
+        private volatile boolean linkCurrent = true;
+        private volatile boolean linkSource;
+
+        Impl(@Nonnull File target, @Nonnull File staging, boolean linkSource, @Nonnull FileChannel lock) {
+            this.target = target;
+            this.staging = staging;
+            this.linkSource = linkSource;
+            this.lock = lock;
+        }
+
+        @Nonnull
+        @Override
+        public File target() {
+            return target;
+        }
+
+        @Nonnull
+        @Override
+        public File staging() {
+            return staging;
+        }
+
+        @Override
+        public boolean keep(@Nonnull File current, @Nonnull File destination) throws IOException {
+
+            if (!current.exists()) {
+                return false;
+            }
+
+            if (linkCurrent) {
+                try {
+                    FileTransfer.link(current, destination);
+                    return true;
+                } catch (IOException | UnsupportedOperationException e) {
+                    linkCurrent = false;
+                }
+            }
+
+            FileTransfer.copy(current, destination);
+
+            return true;
+        }
+
+        @Override
+        public boolean write(@Nonnull File current, @Nonnull File destination, @Nonnull CharSequence contents) throws IOException {
+
+            // encoded and compared in reused buffers
+            final ByteBuffer bytes = FileBuffers.encode(contents);
+
+            if (current.length() == bytes.remaining()
+                    && bytes.equals(FileBuffers.bytes(current))
+                    && keep(current, destination)) {
+                return false;
+            }
+
+            FileBuffers.write(destination, bytes);
+
+            return true;
+        }
+
+        @Override
+        public boolean copy(@Nonnull File current, @Nonnull File destination, @Nonnull File source) throws IOException {
+
+            if (current.length() == source.length()
+                    && FileUtils.contentEquals(current, source)
+                    && keep(current, destination)) {
+                return false;
+            }
+
+            if (linkSource) {
+                try {
+                    FileTransfer.link(source, destination);
+                    return true;
+                } catch (IOException | UnsupportedOperationException e) {
+                    // different file systems or links are not supported, no need to try again
+                    linkSource = false;
+                    warn("[Enhance] cannot create hard link, files would be copied: %s", e.getMessage());
+                }
+            }
+
+            FileTransfer.copy(source, destination);
+
+            return true;
+        }
+
+        @Override
+        public void commit() throws IOException {
+            final File previous = previous(target);
+            final boolean replace = target.exists();
+            if (replace) {
+                Files.move(target.toPath(), previous.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(staging.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            if (replace) {
+                FileUtils.deleteDirectory(previous);
+            }
+        }
+
+        @Override
+        public void close() {
+            release(lock);
+        }
+    }
+}
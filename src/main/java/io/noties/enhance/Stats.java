@@ -1,100 +1,175 @@
 package io.noties.enhance;
 
 import javax.annotation.Nonnull;
-import java.util.*;
+import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 abstract class Stats {
 
-    static void printStatsFor(@Nonnull Integer version, @Nonnull Map<String, ApiInfoStore.TypeVersion> info) {
+    /**
+     * Prints types and members that have been added (`+`) or deprecated (`-`) in each version,
+     * a heading precedes each version if there are several
+     */
+    static void printStatsFor(@Nonnull List<Integer> versions, @Nonnull ApiVersionIndex index, @Nonnull PrintStream out) {
 
-        // filter
-        final Map<String, ApiInfoStore.TypeVersion> filtered = new HashMap<>();
+        // a single buffered stream, `out` is flushed once at the end
+        final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
 
-        for (Map.Entry<String, ApiInfoStore.TypeVersion> types : info.entrySet()) {
+        try {
 
-            final ApiInfoStore.TypeVersion original = types.getValue();
-            final ApiInfoStore.TypeVersion typeVersion = new ApiInfoStore.TypeVersion(original.since, original.deprecated);
+            for (int version : versions) {
 
-            for (Map.Entry<String, ApiInfo> fields : original.fields.entrySet()) {
-                if (shouldEmit(version, fields.getValue())) {
-                    typeVersion.fields.put(fields.getKey(), fields.getValue());
+                if (versions.size() > 1) {
+                    writer.write("## android-" + version + "\n");
+                    writer.newLine();
                 }
-            }
 
-            for (Map.Entry<String, ApiInfo> methods : original.methods.entrySet()) {
-                if (shouldEmit(version, methods.getValue())) {
-                    typeVersion.methods.put(methods.getKey(), methods.getValue());
+                for (ApiVersionIndex.TypeChanges changes : index.changes(version)) {
+
+                    writer.write("```diff\n");
+
+                    appendDiffed(writer, version, changes.info);
+                    writer.write(changes.type);
+                    writer.write('\n');
+
+                    for (ApiVersionIndex.Member field : changes.fields) {
+                        if (appendDiffed(writer, version, field.info)) {
+                            writer.write("   ");
+                            writer.write(field.name);
+                            writer.write('\n');
+                        }
+                    }
+
+                    for (ApiVersionIndex.Member method : changes.methods) {
+                        if (appendDiffed(writer, version, method.info)) {
+                            writer.write("   ");
+                            writer.write(method.name);
+                            writer.write('\n');
+                        }
+                    }
+
+                    writer.write("```\n\n");
+                    writer.newLine();
                 }
             }
 
-            if (shouldEmit(version, original)
-                    || (!typeVersion.fields.isEmpty() || !typeVersion.methods.isEmpty())) {
-                filtered.put(types.getKey(), typeVersion);
-            }
+            writer.flush();
+
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
+    }
 
-        final StringBuilder builder = new StringBuilder();
+    /**
+     * Prints types and members that have been added (`+`), removed (`-`) or re-versioned (`!`,
+     * with old and new versions). Type without a marker is listed for its members
+     */
+    static void printDiff(@Nonnull ApiInfoDiff diff, @Nonnull PrintStream out) {
+
+        final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+
+        try {
 
-        for (String type : sorted(filtered.keySet())) {
-            builder.setLength(0);
-            builder.append("```diff\n");
+            for (ApiInfoDiff.TypeDiff type : diff.types()) {
 
-            final ApiInfoStore.TypeVersion typeVersion = filtered.get(type);
-            appendDiffed(builder, version, typeVersion);
-            builder
-                    .append(type)
-                    .append('\n');
+                writer.write("```diff\n");
 
-            final Map<String, ApiInfo> fields = typeVersion.fields;
-            final Map<String, ApiInfo> methods = typeVersion.methods;
+                appendChange(writer, type.type, "", type.old, type.updated);
 
-            for (String field : sorted(fields.keySet())) {
-                if (appendDiffed(builder, version, fields.get(field))) {
-                    builder.append("   ")
-                            .append(field)
-                            .append("\n");
+                for (ApiInfoDiff.MemberDiff field : type.fields) {
+                    appendChange(writer, field.name, "   ", field.old, field.updated);
                 }
-            }
 
-            for (String method : sorted(methods.keySet())) {
-                if (appendDiffed(builder, version, methods.get(method))) {
-                    builder.append("   ")
-                            .append(method)
-                            .append("\n");
+                for (ApiInfoDiff.MemberDiff method : type.methods) {
+                    appendChange(writer, method.name, "   ", method.old, method.updated);
                 }
+
+                writer.write("```\n\n");
+                writer.newLine();
             }
 
-            builder.append("```\n\n");
-            System.out.println(builder);
+            writer.flush();
+
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void appendChange(
+            @Nonnull BufferedWriter writer,
+            @Nonnull String name,
+            @Nonnull String indent,
+            @Nullable ApiInfo old,
+            @Nullable ApiInfo updated) throws IOException {
+
+        if (old == null || updated == null) {
+            writer.write(old == null ? '+' : '-');
+            writer.write(indent);
+            writer.write(name);
+            final String versions = versions(old == null ? updated : old);
+            if (!versions.isEmpty()) {
+                writer.write("  ");
+                writer.write(versions);
+            }
+        } else if (!ApiInfoDiff.sameVersions(old, updated)) {
+            writer.write('!');
+            writer.write(indent);
+            writer.write(name);
+            writer.write("  ");
+            writer.write(versionsOrNone(old));
+            writer.write(" -> ");
+            writer.write(versionsOrNone(updated));
+        } else {
+            writer.write(indent);
+            writer.write(name);
         }
+
+        writer.write('\n');
     }
 
-    private static boolean shouldEmit(@Nonnull Integer version, @Nonnull ApiInfo info) {
-        return version.equals(info.since) || version.equals(info.deprecated);
+    // `since:24 deprecated:30`, missing versions are omitted (empty if there are none)
+    @Nonnull
+    private static String versions(@Nonnull ApiInfo info) {
+        final StringBuilder builder = new StringBuilder();
+        if (info.since != ApiInfo.NONE) {
+            builder.append("since:").append(info.since);
+        }
+        if (info.deprecated != ApiInfo.NONE) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append("deprecated:").append(info.deprecated);
+        }
+        return builder.toString();
     }
 
-    private static List<String> sorted(@Nonnull Collection<String> collection) {
-        final List<String> list = new ArrayList<>(collection);
-        Collections.sort(list);
-        return list;
+    @Nonnull
+    private static String versionsOrNone(@Nonnull ApiInfo info) {
+        final String versions = versions(info);
+        return versions.isEmpty() ? "none" : versions;
     }
 
     private static boolean appendDiffed(
-            @Nonnull StringBuilder builder,
-            @Nonnull Integer version,
-            @Nonnull ApiInfo info) {
+            @Nonnull BufferedWriter writer,
+            int version,
+            @Nonnull ApiInfo info) throws IOException {
 
         // priority for deprecated (some nodes are both added and deprecated in the same version)
 
         boolean result = false;
 
-        if (version.equals(info.deprecated)) {
-            builder.append('-');
+        if (version == info.deprecated) {
+            writer.write('-');
             result = true;
         }
 
-        if (version.equals(info.since)) {
-            builder.append('+');
+        if (version == info.since) {
+            writer.write('+');
             result = true;
         }
 
@@ -0,0 +1,294 @@
+package io.noties.enhance;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.noties.enhance.Log.log;
+
+/**
+ * Wall and CPU time spent in each stage of processing. Time is measured by a per-thread
+ * {@link Stopwatch}, stage totals are accumulated in {@link LongAdder}s, so concurrent workers
+ * do not contend. Wall time of a stage is summed across threads (can exceed elapsed time).
+ * Files kept from the previous run are counted by the `keep` stage only, processing time
+ * of files (percentiles, the slowest files) does not include them.
+ */
+public abstract class Timings {
+
+    public enum Stage {
+        API_VERSIONS("api-versions"),
+        BACKUP("backup"),
+        KEEP("keep"),
+        CHECK("check"),
+        READ("read"),
+        PARSE("parse"),
+        VISIT("visit"),
+        PRINT("print"),
+        FORMAT("format"),
+        WRITE("write"),
+        COPY("copy"),
+        RECORD("record"),
+        COMMIT("commit");
+
+        final String title;
+
+        Stage(@Nonnull String title) {
+            this.title = title;
+        }
+    }
+
+    /**
+     * Measures consecutive stages on the calling thread
+     */
+    public interface Stopwatch {
+
+        /**
+         * Records time since the previous lap (or start) for the stage
+         */
+        void lap(@Nonnull Stage stage);
+
+        /**
+         * Records time since start as a processed file
+         */
+        void file(@Nonnull String path, long length);
+    }
+
+    @Nonnull
+    public static Timings create() {
+        return new Impl();
+    }
+
+    /**
+     * Starts (resets) stopwatch of the calling thread
+     */
+    @Nonnull
+    public abstract Stopwatch start();
+
+    /**
+     * Records processing time of a file measured by the caller, for a file that passes
+     * several threads (pipeline stages)
+     */
+    public abstract void file(@Nonnull String path, long length, long nanos);
+
+    /**
+     * Logs stage totals, percentiles of file processing time and the slowest files
+     */
+    public abstract void report();
+
+    public abstract void writeJson(@Nonnull File file) throws IOException;
+
+
+    private static class Impl extends Timings {
+
+        private static final int SLOWEST = 10;
+
+        private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        private final boolean cpu = threadMXBean.isCurrentThreadCpuTimeSupported();
+
+        private final long started = System.nanoTime();
+
+        private final LongAdder[] wall = adders();
+        private final LongAdder[] cpuTime = adders();
+        private final LongAdder[] count = adders();
+
+        private final Queue<FileTime> files = new ConcurrentLinkedQueue<>();
+
+        private final ThreadLocal<StopwatchImpl> stopwatch = ThreadLocal.withInitial(StopwatchImpl::new);
+
+        Impl() {
+            if (cpu && !threadMXBean.isThreadCpuTimeEnabled()) {
+                threadMXBean.setThreadCpuTimeEnabled(true);
+            }
+        }
+
+        @Nonnull
+        @Override
+        public Stopwatch start() {
+            final StopwatchImpl stopwatch = this.stopwatch.get();
+            stopwatch.reset();
+            return stopwatch;
+        }
+
+        @Override
+        public void file(@Nonnull String path, long length, long nanos) {
+            files.add(new FileTime(path, length, nanos));
+        }
+
+        @Override
+        public void report() {
+
+            log("[Enhance] timings (summed across threads):");
+            for (Stage stage : Stage.values()) {
+                final int i = stage.ordinal();
+                if (count[i].sum() > 0L) {
+                    log("[Enhance]   %-13s wall: %8.1f ms, cpu: %8.1f ms, count: %d",
+                            stage.title, millis(wall[i].sum()), millis(cpuTime[i].sum()), count[i].sum());
+                }
+            }
+
+            final List<FileTime> files = sorted();
+            if (files.isEmpty()) {
+                return;
+            }
+
+            log("[Enhance] processed files: %d (kept are not included), p50: %.2f ms, p90: %.2f ms, p99: %.2f ms, max: %.2f ms",
+                    files.size(),
+                    millis(percentile(files, 50).nanos),
+                    millis(percentile(files, 90).nanos),
+                    millis(percentile(files, 99).nanos),
+                    millis(files.get(files.size() - 1).nanos));
+
+            log("[Enhance] slowest files:");
+            for (FileTime file : slowest(files)) {
+                log("[Enhance]   %8.2f ms  %s (%d KB)", millis(file.nanos), file.path, file.length / 1024);
+            }
+        }
+
+        @Override
+        public void writeJson(@Nonnull File file) throws IOException {
+
+            final List<FileTime> files = sorted();
+
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+
+                writer.write("{\n");
+                writer.write(String.format(Locale.US, "  \"elapsedMs\": %.1f,\n", millis(System.nanoTime() - started)));
+
+                writer.write("  \"stages\": {");
+                boolean first = true;
+                for (Stage stage : Stage.values()) {
+                    final int i = stage.ordinal();
+                    if (count[i].sum() == 0L) {
+                        continue;
+                    }
+                    writer.write(first ? "\n" : ",\n");
+                    first = false;
+                    writer.write(String.format(Locale.US, "    \"%s\": {\"wallMs\": %.1f, \"cpuMs\": %.1f, \"count\": %d}",
+                            stage.title, millis(wall[i].sum()), millis(cpuTime[i].sum()), count[i].sum()));
+                }
+                writer.write("\n  },\n");
+
+                writer.write(String.format(Locale.US, "  \"files\": %d,\n", files.size()));
+                writer.write(String.format(Locale.US, "  \"kept\": %d", count[Stage.KEEP.ordinal()].sum()));
+                if (!files.isEmpty()) {
+                    writer.write(String.format(Locale.US,
+                            ",\n  \"percentilesMs\": {\"p50\": %.2f, \"p90\": %.2f, \"p99\": %.2f, \"max\": %.2f},\n",
+                            millis(percentile(files, 50).nanos),
+                            millis(percentile(files, 90).nanos),
+                            millis(percentile(files, 99).nanos),
+                            millis(files.get(files.size() - 1).nanos)));
+                    writer.write("  \"slowest\": [");
+                    first = true;
+                    for (FileTime time : slowest(files)) {
+                        writer.write(first ? "\n" : ",\n");
+                        first = false;
+                        writer.write(String.format(Locale.US, "    {\"path\": \"%s\", \"ms\": %.2f, \"length\": %d}",
+                                escape(time.path), millis(time.nanos), time.length));
+                    }
+                    writer.write("\n  ]");
+                }
+                writer.write("\n}\n");
+            }
+        }
+
+        @Nonnull
+        private List<FileTime> sorted() {
+            final List<FileTime> list = new ArrayList<>(files);
+            list.sort(Comparator.comparingLong(time -> time.nanos));
+            return list;
+        }
+
+        @Nonnull
+        private static List<FileTime> slowest(@Nonnull List<FileTime> sorted) {
+            final List<FileTime> list = new ArrayList<>(SLOWEST);
+            for (int i = sorted.size() - 1; i >= 0 && list.size() < SLOWEST; i--) {
+                list.add(sorted.get(i));
+            }
+            return list;
+        }
+
+        // nearest-rank percentile
+        @Nonnull
+        private static FileTime percentile(@Nonnull List<FileTime> sorted, int percentile) {
+            final int rank = (int) Math.ceil(percentile / 100D * sorted.size());
+            return sorted.get(Math.max(0, rank - 1));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000D;
+        }
+
+        @Nonnull
+        private static String escape(@Nonnull String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+
+        @Nonnull
+        private static LongAdder[] adders() {
+            final LongAdder[] adders = new LongAdder[Stage.values().length];
+            for (int i = 0; i < adders.length; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+
+        private long cpuTime() {
+            return cpu ? threadMXBean.getCurrentThreadCpuTime() : 0L;
+        }
+
+        private class StopwatchImpl implements Stopwatch {
+
+            private long start;
+            private long lastWall;
+            private long lastCpu;
+
+            void reset() {
+                start = lastWall = System.nanoTime();
+                lastCpu = cpuTime();
+            }
+
+            @Override
+            public void lap(@Nonnull Stage stage) {
+                final long wall = System.nanoTime();
+                final long cpu = cpuTime();
+                final int i = stage.ordinal();
+                Impl.this.wall[i].add(wall - lastWall);
+                Impl.this.cpuTime[i].add(cpu - lastCpu);
+                Impl.this.count[i].increment();
+                lastWall = wall;
+                lastCpu = cpu;
+            }
+
+            @Override
+            public void file(@Nonnull String path, long length) {
+                Impl.this.file(path, length, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static class FileTime {
+
+        final String path;
+        final long length;
+        final long nanos;
+
+        FileTime(@Nonnull String path, long length, long nanos) {
+            this.path = path;
+            this.length = length;
+            this.nanos = nanos;
+        }
+    }
+}
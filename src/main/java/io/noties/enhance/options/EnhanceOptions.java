@@ -1,6 +1,9 @@
 package io.noties.enhance.options;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
 
 public abstract class EnhanceOptions {
 
@@ -15,7 +18,117 @@ public abstract class EnhanceOptions {
     @Nonnull
     public abstract SourceFormat sourceFormat();
 
+    /**
+     * @return if javadoc tags should be inserted into the original source text, instead of printing
+     * the whole parsed source. Cannot be used with formatting
+     */
+    public abstract boolean splice();
+
+    /**
+     * @return if files that are not modified should be hard-linked from the backup instead of being copied
+     */
+    public abstract boolean link();
+
     public abstract boolean emitDiff();
 
-    public abstract int sdk();
+    /**
+     * @return SDK versions to emit diff of (specified with the diff option), empty if diff should be
+     * emitted for the processed SDK version
+     */
+    @Nonnull
+    public abstract List<Integer> diffVersions();
+
+    /**
+     * @return paths of the old and new `api-versions.xml` to compare (instead of processing SDK
+     * versions), `null` if files should not be compared
+     */
+    @Nullable
+    public abstract List<String> compare();
+
+    /**
+     * @return if `api-versions.xml` should be parsed with the legacy DOM parser instead of the streaming one
+     */
+    public abstract boolean domParser();
+
+    /**
+     * @return if binary index of parsed `api-versions.xml` should be used (and created if missing)
+     */
+    public abstract boolean cache();
+
+    /**
+     * @return if all files should be processed, ignoring results of the previous run
+     */
+    public abstract boolean full();
+
+    /**
+     * @return path of a file to write timings to (as JSON) or `null`
+     */
+    @Nullable
+    public abstract String timings();
+
+    /**
+     * @return if only warnings and errors should be logged
+     */
+    public abstract boolean quiet();
+
+    /**
+     * @return if every processed file should be logged
+     */
+    public abstract boolean verbose();
+
+    /**
+     * @return worker count of each pipeline stage (`read`, `parse`, `visit`, `print`, `format`, `write`)
+     * if files should be processed in a pipeline, `null` otherwise. Stages that are not
+     * specified are absent from the map
+     */
+    @Nullable
+    public abstract Map<String, Integer> pipeline();
+
+    /**
+     * @return if the process should stay resident and run jobs submitted with {@link #remote()}
+     */
+    public abstract boolean daemon();
+
+    /**
+     * @return if the job should be submitted to a running daemon instead of being run by this process
+     */
+    public abstract boolean remote();
+
+    /**
+     * @return arguments of a job to submit to a daemon, which resolves them in own process: paths are
+     * absolute (resolved against the working directory of this process), path to Android SDK is always
+     * specified (resolved with `ANDROID_HOME` of this process if missing), {@link #remote()} is dropped
+     */
+    @Nonnull
+    public abstract String[] remoteArgs();
+
+    /**
+     * @return loopback port of the daemon
+     */
+    public abstract int port();
+
+    /**
+     * @return SDK versions to process, in the specified order without duplicates, never empty.
+     * Accepts a list and/or ranges: `30,31`, `30..34`, `28,30..34`. If not specified, the newest
+     * of {@link #diffVersions()}
+     */
+    @Nonnull
+    public abstract List<Integer> sdks();
+
+    /**
+     * @return if `api-versions.xml` of the newest specified SDK version should be loaded once and
+     * used for all of them (it contains the whole history), instead of loading one for each version
+     */
+    public abstract boolean sharedApiVersions();
+
+    /**
+     * @return if several SDK versions should be processed concurrently (files of all
+     * of them are processed by the same `threads`)
+     */
+    public abstract boolean concurrentSdks();
+
+    /**
+     * @return number of threads to process source files with, always positive
+     */
+    public abstract int threads();
 }
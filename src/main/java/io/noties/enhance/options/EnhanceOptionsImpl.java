@@ -3,6 +3,16 @@ package io.noties.enhance.options;
 import org.apache.commons.cli.*;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 class EnhanceOptionsImpl extends EnhanceOptions {
 
@@ -11,6 +21,29 @@ class EnhanceOptionsImpl extends EnhanceOptions {
     private static final String SDK = "sdk";
     private static final String HELP = "h";
     private static final String DIFF = "diff";
+    private static final String THREADS = "t";
+    private static final String DOM = "dom";
+    private static final String NO_CACHE = "no-cache";
+    private static final String FULL = "full";
+    private static final String SPLICE = "splice";
+    private static final String LINK = "link";
+    private static final String QUIET = "quiet";
+    private static final String VERBOSE = "verbose";
+    private static final String TIMINGS = "timings";
+    private static final String PIPELINE = "pipeline";
+    private static final String CONCURRENT_SDKS = "concurrent-sdks";
+    private static final String SHARED_API_VERSIONS = "shared-api-versions";
+    private static final String DAEMON = "daemon";
+    private static final String REMOTE = "remote";
+    private static final String PORT = "port";
+    private static final String COMPARE = "compare";
+
+    private static final int DEFAULT_PORT = 47011;
+
+    // far more than there are Android versions, a larger range is a typo
+    private static final int MAX_SDK_RANGE = 1000;
+
+    private static final List<String> PIPELINE_STAGES = Arrays.asList("read", "parse", "visit", "print", "format", "write");
 
     private final CommandLine commandLine;
 
@@ -30,6 +63,40 @@ class EnhanceOptionsImpl extends EnhanceOptions {
         if (commandLine.hasOption('h')) {
             new HelpFormatter().printHelp("Enhance", options);
         }
+
+        if (splice() && sourceFormat() != SourceFormat.NONE) {
+            new HelpFormatter().printHelp("Enhance", options);
+            throw new IllegalStateException("`-" + SPLICE + "` cannot be used together with `-" + FORMAT + "`");
+        }
+
+        if (quiet() && verbose()) {
+            new HelpFormatter().printHelp("Enhance", options);
+            throw new IllegalStateException("`-" + QUIET + "` cannot be used together with `-" + VERBOSE + "`");
+        }
+
+        if (daemon() && remote()) {
+            new HelpFormatter().printHelp("Enhance", options);
+            throw new IllegalStateException("`-" + DAEMON + "` cannot be used together with `-" + REMOTE + "`");
+        }
+
+        // daemon receives SDK versions with jobs, diff of versions defaults to the newest of them
+        if (!daemon() && compare() == null && !commandLine.hasOption(SDK) && commandLine.getOptionValue(DIFF) == null) {
+            new HelpFormatter().printHelp("Enhance", options);
+            throw new IllegalStateException("Missing required option: " + SDK);
+        }
+
+        try {
+            if (!daemon() && compare() == null) {
+                sdks();
+                diffVersions();
+            }
+            threads();
+            port();
+            pipeline();
+        } catch (IllegalStateException e) {
+            new HelpFormatter().printHelp("Enhance", options);
+            throw e;
+        }
     }
 
     @Nonnull
@@ -69,15 +136,247 @@ class EnhanceOptionsImpl extends EnhanceOptions {
         return format;
     }
 
+    @Override
+    public boolean splice() {
+        return commandLine.hasOption(SPLICE);
+    }
+
+    @Override
+    public boolean link() {
+        return commandLine.hasOption(LINK);
+    }
+
     @Override
     public boolean emitDiff() {
         return commandLine.hasOption(DIFF);
     }
 
     @Override
-    public int sdk() {
-        final String value = commandLine.getOptionValue(SDK, "0");
-        return Integer.parseInt(value);
+    public boolean domParser() {
+        return commandLine.hasOption(DOM);
+    }
+
+    @Override
+    public boolean cache() {
+        return !commandLine.hasOption(NO_CACHE);
+    }
+
+    @Override
+    public boolean full() {
+        return commandLine.hasOption(FULL);
+    }
+
+    @Nullable
+    @Override
+    public String timings() {
+        return commandLine.getOptionValue(TIMINGS);
+    }
+
+    @Override
+    public boolean quiet() {
+        return commandLine.hasOption(QUIET);
+    }
+
+    @Override
+    public boolean verbose() {
+        return commandLine.hasOption(VERBOSE);
+    }
+
+    @Nullable
+    @Override
+    public Map<String, Integer> pipeline() {
+
+        if (!commandLine.hasOption(PIPELINE)) {
+            return null;
+        }
+
+        final Map<String, Integer> map = new HashMap<>();
+
+        final String value = commandLine.getOptionValue(PIPELINE, "");
+        if (value.isEmpty()) {
+            return map;
+        }
+
+        // read=1,parse=4
+        for (String stage : value.split(",")) {
+
+            final int index = stage.indexOf('=');
+            final String name = index < 0 ? stage.trim() : stage.substring(0, index).trim();
+            if (!PIPELINE_STAGES.contains(name)) {
+                throw new IllegalStateException("Unknown pipeline stage: `" + name + "`, expected one of: " + PIPELINE_STAGES);
+            }
+
+            final int workers;
+            try {
+                workers = index < 0 ? 0 : Integer.parseInt(stage.substring(index + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("Invalid worker count of pipeline stage: `" + stage + "`", e);
+            }
+            if (workers < 1) {
+                throw new IllegalStateException("Pipeline stage must have at least 1 worker: `" + stage + "`");
+            }
+
+            map.put(name, workers);
+        }
+
+        return map;
+    }
+
+    @Nonnull
+    @Override
+    public List<Integer> diffVersions() {
+        final String value = commandLine.getOptionValue(DIFF);
+        return value != null
+                ? versions(value)
+                : Collections.emptyList();
+    }
+
+    @Nonnull
+    @Override
+    public List<Integer> sdks() {
+        if (!commandLine.hasOption(SDK)) {
+            final List<Integer> diffVersions = diffVersions();
+            if (!diffVersions.isEmpty()) {
+                // api-versions.xml of the newest version contains the whole history
+                return Collections.singletonList(Collections.max(diffVersions));
+            }
+        }
+        return versions(commandLine.getOptionValue(SDK, ""));
+    }
+
+    @Nonnull
+    private static List<Integer> versions(@Nonnull String value) {
+
+        final Set<Integer> sdks = new LinkedHashSet<>();
+
+        // 28,30..34
+        for (String part : value.split(",")) {
+
+            final int index = part.indexOf("..");
+            try {
+                if (index < 0) {
+                    sdks.add(version(part, part));
+                } else {
+                    final int from = version(part.substring(0, index), part);
+                    final int to = version(part.substring(index + 2), part);
+                    if (from > to) {
+                        throw new IllegalStateException("Invalid SDK range: `" + part + "`");
+                    }
+                    if (to - from >= MAX_SDK_RANGE) {
+                        throw new IllegalStateException("SDK range is too large (at most " + MAX_SDK_RANGE +
+                                " versions): `" + part + "`");
+                    }
+                    for (int sdk = from; sdk <= to; sdk++) {
+                        sdks.add(sdk);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("Invalid SDK version: `" + part + "`", e);
+            }
+        }
+
+        return new ArrayList<>(sdks);
+    }
+
+    private static int version(@Nonnull String value, @Nonnull String part) {
+        final int version = Integer.parseInt(value.trim());
+        if (version < 1) {
+            throw new IllegalStateException("Invalid SDK version: `" + part + "`");
+        }
+        return version;
+    }
+
+    @Override
+    public boolean daemon() {
+        return commandLine.hasOption(DAEMON);
+    }
+
+    @Override
+    public boolean remote() {
+        return commandLine.hasOption(REMOTE);
+    }
+
+    @Nonnull
+    @Override
+    public String[] remoteArgs() {
+
+        final List<String> args = new ArrayList<>();
+
+        for (Option option : commandLine.getOptions()) {
+
+            final String name = option.getOpt();
+            if (REMOTE.equals(name) || SDK_PATH.equals(name)) {
+                continue;
+            }
+
+            args.add("-" + name);
+
+            final String[] values = option.getValues();
+            if (values == null) {
+                continue;
+            }
+
+            final boolean paths = TIMINGS.equals(name) || COMPARE.equals(name);
+            for (String value : values) {
+                args.add(paths ? new File(value).getAbsolutePath() : value);
+            }
+        }
+
+        args.add("-" + SDK_PATH);
+        args.add(new File(androidSdkPath()).getAbsolutePath());
+
+        return args.toArray(new String[0]);
+    }
+
+    @Override
+    public int port() {
+        final String value = commandLine.getOptionValue(PORT, String.valueOf(DEFAULT_PORT));
+        final int port;
+        try {
+            port = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid port: `" + value + "`", e);
+        }
+        if (port < 1 || port > 65535) {
+            throw new IllegalStateException("Invalid port: `" + value + "`");
+        }
+        return port;
+    }
+
+    @Nullable
+    @Override
+    public List<String> compare() {
+        final String[] values = commandLine.getOptionValues(COMPARE);
+        return values != null
+                ? Arrays.asList(values)
+                : null;
+    }
+
+    @Override
+    public boolean sharedApiVersions() {
+        return commandLine.hasOption(SHARED_API_VERSIONS);
+    }
+
+    @Override
+    public boolean concurrentSdks() {
+        return commandLine.hasOption(CONCURRENT_SDKS);
+    }
+
+    @Override
+    public int threads() {
+        final String value = commandLine.getOptionValue(THREADS, "1");
+        final int threads;
+        try {
+            threads = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid number of threads: `" + value + "`", e);
+        }
+        if (threads < 0) {
+            throw new IllegalStateException("Invalid number of threads: `" + value + "`");
+        }
+        return threads > 0
+                ? threads
+                : Runtime.getRuntime().availableProcessors();
     }
 
     @Nonnull
@@ -92,12 +391,75 @@ class EnhanceOptionsImpl extends EnhanceOptions {
                 "would keep original formatting");
 
         options.addOption(Option.builder(SDK)
-                .required(true)
                 .hasArg(true)
-                .desc("Specify which SDK version to process.")
+                .desc("Specify which SDK version to process. Accepts a list and/or ranges of versions " +
+                        "to process in one run, for example `30,31` or `30..34`")
+                .build());
+
+        options.addOption(CONCURRENT_SDKS, false, "Process several SDK versions concurrently, " +
+                "files of all of them are processed by the same `-t` threads");
+
+        options.addOption(SHARED_API_VERSIONS, false, "Load api-versions.xml of the newest specified " +
+                "SDK version once and use it for all of them (entries added after a version are ignored)");
+
+        options.addOption(Option.builder(DIFF)
+                .hasArg(true)
+                .optionalArg(true)
+                .desc("Emit diff (added and deprecated types and members) of the processed SDK " +
+                        "versions. Accepts versions to emit diff of, for example `30..34` " +
+                        "(api-versions.xml of `-sdk` is used, the newest of them if missing)")
+                .build());
+
+        options.addOption(Option.builder(COMPARE)
+                .numberOfArgs(2)
+                .argName("old> <new")
+                .desc("Compare two api-versions.xml files (for example, of two revisions of a platform) " +
+                        "and emit added, removed and re-versioned types, fields and methods. `-sdk` is not required")
+                .build());
+
+        options.addOption(THREADS, "threads", true, "Number of threads to process source files with. " +
+                "Defaults to 1, 0 would use all available processors");
+
+        options.addOption(DOM, false, "Parse api-versions.xml with the DOM parser (whole document is " +
+                "loaded in memory). By default streaming parser is used");
+
+        options.addOption(NO_CACHE, false, "Always parse api-versions.xml, do not use (nor create) " +
+                "its binary index in the application backup directory");
+
+        options.addOption(FULL, false, "Process all source files. By default only files that have " +
+                "changed since the previous run are processed");
+
+        options.addOption(SPLICE, false, "Insert javadoc tags into the original source text, " +
+                "keeping the rest of a file as is. Cannot be used with `-format`");
+
+        options.addOption(LINK, false, "Hard-link files that are not modified from the backup instead " +
+                "of copying them (if on the same file system). Linked files are read-only, as they share " +
+                "contents with the backup");
+
+        options.addOption(TIMINGS, true, "Write timings of processing stages (and the slowest files) " +
+                "as JSON to the specified file");
+
+        options.addOption(Option.builder(PIPELINE)
+                .hasArg(true)
+                .optionalArg(true)
+                .desc("Process files in a pipeline of stages (read, parse, visit, print, format, write) " +
+                        "connected with bounded queues, each stage has own worker threads. Accepts worker " +
+                        "counts, for example `read=1,parse=4,format=4`. Stages that are not specified " +
+                        "have 1 worker. `-t` is ignored")
                 .build());
 
-        options.addOption(DIFF, false, "Emit diff");
+        options.addOption(DAEMON, false, "Stay resident and run jobs submitted with `-" + REMOTE + "`, " +
+                "keeping loaded api-versions.xml, parsers and formatters warm. Listens on the loopback " +
+                "interface only");
+
+        options.addOption(REMOTE, false, "Submit the job to a running daemon (`-" + DAEMON + "`) and " +
+                "stream its output");
+
+        options.addOption(PORT, true, "Loopback port of the daemon, " + DEFAULT_PORT + " by default");
+
+        options.addOption(QUIET, false, "Log only warnings and errors, no progress");
+
+        options.addOption(VERBOSE, false, "Log every processed file");
 
         options.addOption(HELP, "help", false, "Prints help");
 
@@ -0,0 +1,98 @@
+package io.noties.enhance;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ApiInfoDiffTest {
+
+    @Test
+    public void diff() {
+
+        final Map<String, ApiInfoStore.TypeVersion> old = new HashMap<>();
+        final Map<String, ApiInfoStore.TypeVersion> updated = new HashMap<>();
+
+        for (Map<String, ApiInfoStore.TypeVersion> info : Arrays.asList(old, updated)) {
+            final ApiInfoStore.TypeVersion same = new ApiInfoStore.TypeVersion(1, ApiInfo.NONE);
+            same.fields.put("RESULT_OK", ApiInfo.of(1, ApiInfo.NONE));
+            same.methods.put("onCreate(Landroid/os/Bundle;)V", ApiInfo.of(1, ApiInfo.NONE));
+            info.put("android/app/Same", same);
+        }
+
+        {
+            final ApiInfoStore.TypeVersion version = new ApiInfoStore.TypeVersion(1, ApiInfo.NONE);
+            version.fields.put("FOCUSED_STATE_SET", ApiInfo.of(1, ApiInfo.NONE));
+            version.methods.put("removed()V", ApiInfo.of(24, ApiInfo.NONE));
+            old.put("android/app/Activity", version);
+            old.put("android/app/Removed", new ApiInfoStore.TypeVersion(29, ApiInfo.NONE));
+        }
+
+        {
+            final ApiInfoStore.TypeVersion version = new ApiInfoStore.TypeVersion(1, 34);
+            version.fields.put("FOCUSED_STATE_SET", ApiInfo.of(1, 30));
+            version.methods.put("added()V", ApiInfo.of(34, ApiInfo.NONE));
+            updated.put("android/app/Activity", version);
+            updated.put("android/app/Added", new ApiInfoStore.TypeVersion(34, ApiInfo.NONE));
+        }
+
+        final ApiInfoDiff diff = ApiInfoDiff.create(new ApiInfoDiff.Input(old), new ApiInfoDiff.Input(updated));
+
+        // unchanged type is not compared by members
+        assertEquals(1, diff.comparedTypes());
+
+        final List<ApiInfoDiff.TypeDiff> types = diff.types();
+        assertEquals(3, types.size());
+
+        final ApiInfoDiff.TypeDiff activity = types.get(0);
+        assertEquals("android/app/Activity", activity.type);
+        assertEquals(ApiInfo.NONE, activity.old.deprecated);
+        assertEquals(34, activity.updated.deprecated);
+
+        assertEquals(1, activity.fields.size());
+        assertEquals(30, activity.fields.get(0).updated.deprecated);
+
+        assertEquals(2, activity.methods.size());
+        assertEquals("added()V", activity.methods.get(0).name);
+        assertNull(activity.methods.get(0).old);
+        assertEquals("removed()V", activity.methods.get(1).name);
+        assertNull(activity.methods.get(1).updated);
+
+        assertEquals("android/app/Added", types.get(1).type);
+        assertNull(types.get(1).old);
+
+        assertEquals("android/app/Removed", types.get(2).type);
+        assertNull(types.get(2).updated);
+        assertTrue(types.get(2).methods.isEmpty());
+    }
+
+    @Test
+    public void collidingNames() {
+
+        // same String#hashCode
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+
+        final Map<String, ApiInfoStore.TypeVersion> old = new HashMap<>();
+        final Map<String, ApiInfoStore.TypeVersion> updated = new HashMap<>();
+        {
+            final ApiInfoStore.TypeVersion version = new ApiInfoStore.TypeVersion(1, ApiInfo.NONE);
+            version.methods.put("Aa", ApiInfo.of(1, ApiInfo.NONE));
+            old.put("android/app/Activity", version);
+        }
+        {
+            final ApiInfoStore.TypeVersion version = new ApiInfoStore.TypeVersion(1, ApiInfo.NONE);
+            version.methods.put("BB", ApiInfo.of(1, ApiInfo.NONE));
+            updated.put("android/app/Activity", version);
+        }
+
+        final ApiInfoDiff diff = ApiInfoDiff.create(new ApiInfoDiff.Input(old), new ApiInfoDiff.Input(updated));
+        assertEquals(1, diff.types().size());
+        assertEquals(2, diff.types().get(0).methods.size());
+    }
+}
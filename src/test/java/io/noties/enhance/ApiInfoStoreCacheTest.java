@@ -0,0 +1,136 @@
+package io.noties.enhance;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static io.noties.enhance.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ApiInfoStoreCacheTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+
+        final Map<String, ApiInfoStore.TypeVersion> info = new HashMap<>();
+        {
+            final ApiInfoStore.TypeVersion version = new ApiInfoStore.TypeVersion(1, ApiInfo.NONE);
+            version.fields.put("RESULT_OK", ApiInfo.of(1, ApiInfo.NONE));
+            version.fields.put("FOCUSED_STATE_SET", ApiInfo.of(ApiInfo.NONE, 30));
+            version.methods.put("<init>()V", ApiInfo.of(1, ApiInfo.NONE));
+            version.methods.put("onMultiWindowModeChanged(Z)V", ApiInfo.of(24, 26));
+            info.put("android/app/Activity", version);
+        }
+        {
+            final ApiInfoStore.TypeVersion version = new ApiInfoStore.TypeVersion(30, 33);
+            info.put("android/app/Activity$Inner", version);
+        }
+        {
+            final ApiInfoStore.TypeVersion version = new ApiInfoStore.TypeVersion(ApiInfo.NONE, ApiInfo.NONE);
+            version.methods.put("obtain(I)LParcel;", ApiInfo.of(1, ApiInfo.NONE));
+            info.put("android/os/Parcel", version);
+        }
+
+        final File folder = temporaryFolder.getRoot();
+        final File file = new File(folder, "index.bin");
+
+        ApiInfoStoreCache.write(info, folder, file);
+
+        final ApiInfoStore store = ApiInfoStoreCache.map(file);
+        assertNotNull(store);
+
+        assertEquals(ApiInfo.of(1, ApiInfo.NONE).toString(), String.valueOf(store.type("android/app/Activity")));
+        assertEquals(ApiInfo.of(30, 33).toString(), String.valueOf(store.type("android/app/Activity$Inner")));
+        assertNull(store.type("android/app/Activity$Missing"));
+        assertNull(store.type("android/app"));
+
+        assertEquals(ApiInfo.of(ApiInfo.NONE, 30).toString(), String.valueOf(store.field("android/app/Activity", "FOCUSED_STATE_SET")));
+        assertNull(store.field("android/app/Activity", "<init>()V"));
+        assertNull(store.field("android/os/Parcel", "RESULT_OK"));
+
+        assertEquals(ApiInfo.of(24, 26).toString(), String.valueOf(store.method("android/app/Activity", "onMultiWindowModeChanged(Z)V")));
+        assertEquals(ApiInfo.of(1, ApiInfo.NONE).toString(), String.valueOf(store.method("android/os/Parcel", "obtain(I)LParcel;")));
+        assertNull(store.method("android/app/Activity", "RESULT_OK"));
+        // instances are shared
+        assertSame(ApiInfo.of(24, 26), store.method("android/app/Activity", "onMultiWindowModeChanged(Z)V"));
+        assertEquals(ApiInfo.of(24, 26).toString(), String.valueOf(store.method("android/app/Activity", new StringBuilder("onMultiWindowModeChanged(Z)V"))));
+        assertNull(store.method("android/app/Activity", new StringBuilder("onMultiWindowModeChanged(Z)")));
+
+        assertTrue(store.hasTopLevelType("android/app/Activity"));
+        assertTrue(store.hasTopLevelType("android/os/Parcel"));
+        assertFalse(store.hasTopLevelType("android/app/Activit"));
+        assertFalse(store.hasTopLevelType("android/app/ActivityManager"));
+        assertFalse(store.hasTopLevelType("android/app"));
+        assertFalse(store.hasTopLevelType("android/os/Parcelable"));
+        assertFalse(store.hasTopLevelType("z"));
+
+        final Map<String, ApiInfoStore.TypeVersion> restored = store.info();
+        assertEquals(info.keySet(), restored.keySet());
+        assertEquals(2, restored.get("android/app/Activity").fields.size());
+        assertEquals(2, restored.get("android/app/Activity").methods.size());
+    }
+
+    @Test
+    public void previousIndicesArePruned() throws IOException {
+
+        final File folder = temporaryFolder.getRoot();
+        final File xml = new File(folder, "api-versions.xml");
+        final File other = new File(folder, "other-api-versions.xml");
+
+        apiVersions(xml, "since=\"1\"");
+        apiVersions(other, "since=\"2\"");
+        ApiInfoStoreCache.load(other, folder, false);
+        final String otherIndex = only(folder, ApiInfoStoreCache.prefix(other));
+
+        ApiInfoStoreCache.load(xml, folder, false);
+        final String previous = only(folder, ApiInfoStoreCache.prefix(xml));
+
+        // new contents create a new index, previous is removed
+        apiVersions(xml, "since=\"3\"");
+        final ApiInfoStore store = ApiInfoStoreCache.load(xml, folder, false);
+        assertEquals(ApiInfo.of(3, ApiInfo.NONE).toString(), String.valueOf(store.type("android/app/Activity")));
+
+        final String current = only(folder, ApiInfoStoreCache.prefix(xml));
+        assertFalse(current.equals(previous));
+
+        // index of other file is kept
+        assertEquals(otherIndex, only(folder, ApiInfoStoreCache.prefix(other)));
+
+        // same contents, index is mapped
+        final ApiInfoStore mapped = ApiInfoStoreCache.load(xml, folder, false);
+        assertEquals(ApiInfo.of(3, ApiInfo.NONE).toString(), String.valueOf(mapped.type("android/app/Activity")));
+        assertEquals(current, only(folder, ApiInfoStoreCache.prefix(xml)));
+    }
+
+    private static void apiVersions(File file, String since) throws IOException {
+        write(file, "<api version=\"3\">\n" +
+                "  <class name=\"android/app/Activity\" " + since + "/>\n" +
+                "</api>\n");
+    }
+
+    private static String only(File folder, String prefix) {
+        final Set<String> names = new TreeSet<>();
+        for (String name : folder.list()) {
+            if (name.startsWith(prefix)) {
+                names.add(name);
+            }
+        }
+        assertEquals(names.toString(), 1, names.size());
+        return names.iterator().next();
+    }
+}
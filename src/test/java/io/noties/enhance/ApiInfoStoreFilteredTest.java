@@ -0,0 +1,60 @@
+package io.noties.enhance;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ApiInfoStoreFilteredTest {
+
+    @Test
+    public void olderVersion() {
+
+        final Map<String, ApiInfoStore.TypeVersion> info = new HashMap<>();
+        {
+            final ApiInfoStore.TypeVersion version = new ApiInfoStore.TypeVersion(1, ApiInfo.NONE);
+            version.fields.put("RESULT_OK", ApiInfo.of(1, ApiInfo.NONE));
+            version.fields.put("FOCUSED_STATE_SET", ApiInfo.of(ApiInfo.NONE, 30));
+            version.methods.put("onMultiWindowModeChanged(Z)V", ApiInfo.of(24, 26));
+            version.methods.put("onTopResumedActivityChanged(Z)V", ApiInfo.of(29, ApiInfo.NONE));
+            info.put("android/app/Activity", version);
+        }
+        {
+            final ApiInfoStore.TypeVersion version = new ApiInfoStore.TypeVersion(29, ApiInfo.NONE);
+            version.fields.put("VALUE", ApiInfo.of(ApiInfo.NONE, 30));
+            version.methods.put("added()V", ApiInfo.of(1, ApiInfo.NONE));
+            info.put("android/app/Added", version);
+        }
+
+        final ApiInfoStore store = ApiInfoStore.filtered(new ApiInfoStoreImpl(info), 28);
+
+        assertSame(ApiInfo.of(1, ApiInfo.NONE), store.type("android/app/Activity"));
+        assertSame(ApiInfo.of(1, ApiInfo.NONE), store.field("android/app/Activity", "RESULT_OK"));
+        // deprecated later
+        assertSame(ApiInfo.of(ApiInfo.NONE, ApiInfo.NONE), store.field("android/app/Activity", "FOCUSED_STATE_SET"));
+        assertSame(ApiInfo.of(24, 26), store.method("android/app/Activity", "onMultiWindowModeChanged(Z)V"));
+        // added later
+        assertNull(store.method("android/app/Activity", new StringBuilder("onTopResumedActivityChanged(Z)V")));
+        assertNull(store.type("android/app/Added"));
+        // members of a type added later
+        assertNull(store.field("android/app/Added", "VALUE"));
+        assertNull(store.method("android/app/Added", "added()V"));
+        assertNull(store.method("android/app/Added", new StringBuilder("added()V")));
+
+        assertTrue(store.hasTopLevelType("android/app/Activity"));
+        assertFalse(store.hasTopLevelType("android/app/Added"));
+
+        final Map<String, ApiInfoStore.TypeVersion> filtered = store.info();
+        assertEquals(1, filtered.size());
+        final ApiInfoStore.TypeVersion activity = filtered.get("android/app/Activity");
+        assertEquals(2, activity.fields.size());
+        assertEquals(1, activity.methods.size());
+        assertSame(ApiInfo.of(24, 26), activity.methods.get("onMultiWindowModeChanged(Z)V"));
+    }
+}
@@ -1,15 +1,29 @@
 package io.noties.enhance;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static io.noties.enhance.ApiInfoStoreImpl.Parser.normalizeMethodSignature;
+import static io.noties.enhance.TestFiles.write;
 
 public class ApiInfoStoreImplTest {
 
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void test() {
 
@@ -27,4 +41,139 @@ public class ApiInfoStoreImplTest {
             assertEquals(entry.getKey(), entry.getValue(), normalizeMethodSignature(entry.getKey()));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void normalizeSameAsRegex() {
+
+        final String[] inputs = {
+                "a(La;)V",
+                "a(Lab;)V",
+                "a(La/b;)V",
+                "a(Lab/c;)V",
+                "a(Lab/;)V",
+                "a(L/ab/c;)V",
+                "a(La$b$c;)V",
+                "a(Lab$c;)V",
+                "a(Lab/c$d;)V",
+                "a(Lab$c/d;)V",
+                "a(Lab/c;Lde/f;)Lgh/i;",
+                "a(Lab/Lcd/e;)V",
+                "a(L$a/Lbc/d;)V",
+                "a(Lab/c)V",
+                "Lab/c;Lab/c",
+                "LLL/L;",
+                "[[Landroid/os/Parcel;",
+                "<init>(Ljava/util/Map<TK;TV;>;)V"
+        };
+
+        for (String input : inputs) {
+            assertEquals(input, normalizeWithRegex(input), normalizeMethodSignature(input));
+        }
+
+        // random descriptors from a small alphabet, so all the cases are covered
+        final char[] alphabet = {'L', 'a', 'b', '1', '_', '/', '$', ';', '(', ')', '['};
+        final Random random = new Random(42L);
+        for (int i = 0; i < 100_000; i++) {
+            final char[] chars = new char[1 + random.nextInt(16)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            final String input = new String(chars);
+            assertEquals(input, normalizeWithRegex(input), normalizeMethodSignature(input));
+        }
+    }
+
+    // previous implementation
+    private static String normalizeWithRegex(String name) {
+        if (name.indexOf(';') < 0) {
+            return name;
+        }
+        final Matcher matcher = Pattern.compile("L\\w+[/\\w]+[/$](\\w+);").matcher(name);
+        final StringBuilder builder = new StringBuilder();
+        int index = 0;
+        while (matcher.find()) {
+            if (matcher.start() > index) {
+                builder.append(name, index, matcher.start());
+            }
+            index = matcher.end();
+            builder.append('L')
+                    .append(matcher.group(1))
+                    .append(';');
+        }
+        if (index < name.length()) {
+            builder.append(name.substring(index));
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void streamParserSameAsDom() throws IOException {
+
+        final String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                "<api version=\"3\">\n" +
+                "  <class name=\"android/app/AlertDialog\" since=\"1\">\n" +
+                "    <extends name=\"android/app/Dialog\"/>\n" +
+                "    <method name=\"&lt;init&gt;(Landroid/content/Context;)V\"/>\n" +
+                "    <method name=\"setView(Landroid/view/View;IIII)V\" since=\"3\" deprecated=\"29\"/>\n" +
+                "    <field name=\"THEME_HOLO_DARK\" since=\"11\" deprecated=\"23\"/>\n" +
+                "    <field name=\"THEME_TRADITIONAL\"/>\n" +
+                "  </class>\n" +
+                "  <class name=\"android/app/AlertDialog$Builder\" since=\"1\">\n" +
+                "    <method name=\"setSingleChoiceItems([Ljava/lang/CharSequence;ILandroid/content/DialogInterface$OnClickListener;)Landroid/app/AlertDialog$Builder;\" since=\"1\"/>\n" +
+                "  </class>\n" +
+                "  <class name=\"android/app/Empty\">\n" +
+                "    <method name=\"empty()V\"/>\n" +
+                "  </class>\n" +
+                "  <class name=\"android/app/Members\">\n" +
+                "    <method name=\"m()V\" since=\"30\"/>\n" +
+                "  </class>\n" +
+                "</api>\n";
+
+        final File file = new File(temporaryFolder.getRoot(), "api-versions.xml");
+        write(file, xml);
+
+        final Map<String, ApiInfoStore.TypeVersion> dom = new ApiInfoStoreImpl.DomParser(file).parse();
+        final Map<String, ApiInfoStore.TypeVersion> stream = new ApiInfoStoreImpl.StreamParser(file).parse();
+
+        assertEquals(3, dom.size());
+        assertEquals(dom.keySet(), stream.keySet());
+
+        for (Map.Entry<String, ApiInfoStore.TypeVersion> entry : dom.entrySet()) {
+            final ApiInfoStore.TypeVersion expected = entry.getValue();
+            final ApiInfoStore.TypeVersion actual = stream.get(entry.getKey());
+            assertNotNull(entry.getKey(), actual);
+            assertEquals(entry.getKey(), expected.toString(), actual.toString());
+            assertEquals(entry.getKey(), asString(expected.fields), asString(actual.fields));
+            assertEquals(entry.getKey(), asString(expected.methods), asString(actual.methods));
+        }
+
+        // lookup by a CharSequence finds the same info as by a String
+        final ApiInfoStore store = ApiInfoStore.create(file);
+        for (Map.Entry<String, ApiInfoStore.TypeVersion> entry : dom.entrySet()) {
+            for (String method : entry.getValue().methods.keySet()) {
+                assertSame(store.method(entry.getKey(), method), store.method(entry.getKey(), new StringBuilder(method)));
+            }
+        }
+        assertNull(store.method("android/app/AlertDialog", new StringBuilder("missing()V")));
+
+        // frozen tables give back what was parsed
+        final Map<String, ApiInfoStore.TypeVersion> info = store.info();
+        assertEquals(dom.keySet(), info.keySet());
+        for (Map.Entry<String, ApiInfoStore.TypeVersion> entry : dom.entrySet()) {
+            final ApiInfoStore.TypeVersion actual = info.get(entry.getKey());
+            assertEquals(entry.getKey(), entry.getValue().toString(), actual.toString());
+            assertEquals(entry.getKey(), asString(entry.getValue().fields), asString(actual.fields));
+            assertEquals(entry.getKey(), asString(entry.getValue().methods), asString(actual.methods));
+        }
+        assertNull(store.field("android/app/Dialog", "THEME_TRADITIONAL"));
+        assertNull(store.method("android/app/Members", "setView(Landroid/view/View;IIII)V"));
+    }
+
+    private static Map<String, String> asString(Map<String, ApiInfo> map) {
+        final Map<String, String> out = new HashMap<>();
+        for (Map.Entry<String, ApiInfo> entry : map.entrySet()) {
+            out.put(entry.getKey(), entry.getValue().toString());
+        }
+        return out;
+    }
+}
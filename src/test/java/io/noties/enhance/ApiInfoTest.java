@@ -0,0 +1,89 @@
+package io.noties.enhance;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static io.noties.enhance.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ApiInfoTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shared() {
+
+        final ApiInfo info = ApiInfo.of(24, 30);
+        assertEquals(24, info.since);
+        assertEquals(30, info.deprecated);
+
+        assertSame(info, ApiInfo.of(24, 30));
+        assertNotSame(info, ApiInfo.of(30, 24));
+        assertNotSame(info, ApiInfo.of(24, ApiInfo.NONE));
+    }
+
+    @Test
+    public void sharedOutsideOfCache() {
+
+        // versions that are not known yet are kept in a map
+        final ApiInfo info = ApiInfo.of(1_000, ApiInfo.NONE);
+        assertEquals(1_000, info.since);
+        assertFalse(info.hasDeprecated());
+
+        assertSame(info, ApiInfo.of(1_000, ApiInfo.NONE));
+        assertSame(ApiInfo.of(1, 100_000), ApiInfo.of(1, 100_000));
+        assertNotSame(ApiInfo.of(1, 100_000), ApiInfo.of(100_000, 1));
+    }
+
+    @Test
+    public void none() {
+
+        final ApiInfo info = ApiInfo.of(ApiInfo.NONE, ApiInfo.NONE);
+        assertFalse(info.hasSince());
+        assertFalse(info.hasDeprecated());
+
+        assertTrue(ApiInfo.of(1, ApiInfo.NONE).hasSince());
+        assertTrue(ApiInfo.of(ApiInfo.NONE, 1).hasDeprecated());
+    }
+
+    @Test
+    public void sharedByParsedMembers() throws IOException {
+
+        final File file = new File(temporaryFolder.getRoot(), "api-versions.xml");
+        write(file, "<api version=\"3\">\n" +
+                "    <class name=\"android/app/Activity\" since=\"1\">\n" +
+                "        <field name=\"RESULT_OK\" since=\"1\"/>\n" +
+                "        <method name=\"setValue(I)V\" since=\"29\" deprecated=\"30\"/>\n" +
+                "    </class>\n" +
+                "    <class name=\"android/os/Bundle\" since=\"1\">\n" +
+                "        <field name=\"EMPTY\" since=\"1\"/>\n" +
+                "        <method name=\"getValue()I\" since=\"29\" deprecated=\"30\"/>\n" +
+                "    </class>\n" +
+                "</api>\n");
+
+        for (boolean dom : new boolean[]{true, false}) {
+
+            final ApiInfoStore store = ApiInfoStore.create(file, dom);
+
+            final ApiInfo field = store.field("android/app/Activity", "RESULT_OK");
+            assertNotNull(field);
+            assertSame(field, store.field("android/os/Bundle", "EMPTY"));
+            assertSame(field, ApiInfo.of(1, ApiInfo.NONE));
+
+            final ApiInfo method = store.method("android/app/Activity", "setValue(I)V");
+            assertNotNull(method);
+            assertSame(method, store.method("android/os/Bundle", "getValue()I"));
+            assertSame(method, ApiInfo.of(29, 30));
+        }
+    }
+}
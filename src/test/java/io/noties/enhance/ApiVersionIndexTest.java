@@ -0,0 +1,58 @@
+package io.noties.enhance;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ApiVersionIndexTest {
+
+    @Test
+    public void changes() {
+
+        final Map<String, ApiInfoStore.TypeVersion> info = new HashMap<>();
+        {
+            final ApiInfoStore.TypeVersion version = new ApiInfoStore.TypeVersion(1, ApiInfo.NONE);
+            version.fields.put("RESULT_OK", ApiInfo.of(1, ApiInfo.NONE));
+            version.fields.put("FOCUSED_STATE_SET", ApiInfo.of(ApiInfo.NONE, 30));
+            version.methods.put("onTopResumedActivityChanged(Z)V", ApiInfo.of(29, ApiInfo.NONE));
+            version.methods.put("onMultiWindowModeChanged(Z)V", ApiInfo.of(24, 29));
+            version.methods.put("onAttachedToWindow()V", ApiInfo.of(29, 29));
+            info.put("android/app/Activity", version);
+        }
+        {
+            final ApiInfoStore.TypeVersion version = new ApiInfoStore.TypeVersion(29, ApiInfo.NONE);
+            info.put("android/app/Added", version);
+        }
+
+        final ApiVersionIndex index = ApiVersionIndex.create(info);
+
+        final List<ApiVersionIndex.TypeChanges> changes = index.changes(29);
+        assertEquals(2, changes.size());
+
+        // sorted by type name
+        final ApiVersionIndex.TypeChanges activity = changes.get(0);
+        assertEquals("android/app/Activity", activity.type);
+        // listed for its members
+        assertEquals(1, activity.info.since);
+        assertTrue(activity.fields.isEmpty());
+        assertEquals(3, activity.methods.size());
+        assertEquals("onAttachedToWindow()V", activity.methods.get(0).name);
+        assertEquals("onMultiWindowModeChanged(Z)V", activity.methods.get(1).name);
+        assertEquals("onTopResumedActivityChanged(Z)V", activity.methods.get(2).name);
+
+        assertEquals("android/app/Added", changes.get(1).type);
+
+        final List<ApiVersionIndex.TypeChanges> deprecated = index.changes(30);
+        assertEquals(1, deprecated.size());
+        assertEquals(1, deprecated.get(0).fields.size());
+        assertEquals("FOCUSED_STATE_SET", deprecated.get(0).fields.get(0).name);
+
+        assertEquals(1, index.changes(24).get(0).methods.size());
+        assertTrue(index.changes(28).isEmpty());
+    }
+}
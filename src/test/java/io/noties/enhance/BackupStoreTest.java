@@ -0,0 +1,109 @@
+package io.noties.enhance;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+
+import static io.noties.enhance.TestFiles.read;
+import static io.noties.enhance.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BackupStoreTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File folder;
+    private File store;
+    private File source;
+
+    @Before
+    public void before() throws IOException {
+        folder = temporaryFolder.getRoot();
+        store = new File(folder, "store");
+        source = new File(folder, "android-34");
+        write(new File(source, "android/app/Activity.java"), "activity");
+        write(new File(source, "android/app/Same.java"), "same");
+        write(new File(source, "android/os/Same.java"), "same");
+    }
+
+    @Test
+    public void dedup() throws IOException {
+
+        final BackupStore backupStore = BackupStore.create(store);
+
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            dedup(backupStore, pool);
+            // shared by backups
+            assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void dedup(BackupStore backupStore, ForkJoinPool pool) throws IOException {
+
+        final File first = mkdirs("backup-1");
+        backupStore.backup(source, first, pool);
+
+        assertEquals("activity", read(new File(first, "android/app/Activity.java")));
+        assertEquals("same", read(new File(first, "android/os/Same.java")));
+
+        // same contents are stored once, temporary files are removed
+        assertEquals(2, objects().size());
+
+        // files with the same contents are linked to the same object
+        assertTrue(Files.isSameFile(
+                new File(first, "android/app/Same.java").toPath(),
+                new File(first, "android/os/Same.java").toPath()));
+
+        final File second = mkdirs("backup-2");
+        backupStore.backup(source, second, pool);
+
+        assertEquals(2, objects().size());
+        assertTrue(Files.isSameFile(
+                new File(first, "android/app/Activity.java").toPath(),
+                new File(second, "android/app/Activity.java").toPath()));
+
+        // backup is independent of the source
+        write(new File(source, "android/app/Activity.java"), "changed");
+        assertEquals("activity", read(new File(second, "android/app/Activity.java")));
+    }
+
+    @Test
+    public void storedObjectIsNotReplaced() throws IOException {
+
+        BackupStore.create(store).backup(source, mkdirs("backup-1"), null);
+
+        final File activity = new File(folder, "backup-1/android/app/Activity.java");
+
+        // a new store instance, objects are already stored
+        final File second = mkdirs("backup-2");
+        BackupStore.create(store).backup(source, second, null);
+
+        assertEquals(2, objects().size());
+        assertTrue(Files.isSameFile(activity.toPath(), new File(second, "android/app/Activity.java").toPath()));
+    }
+
+    // backup folder is created before a backup
+    private File mkdirs(String name) {
+        final File file = new File(folder, name);
+        assertTrue(file.mkdirs());
+        return file;
+    }
+
+    private Collection<File> objects() {
+        return FileUtils.listFiles(store, null, true);
+    }
+}
@@ -0,0 +1,51 @@
+package io.noties.enhance;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ByteCodeSignatureTest {
+
+    @Test
+    public void signatures() {
+
+        final String source = "class A {\n" +
+                "  A(int i) {}\n" +
+                "  void a() {}\n" +
+                "  boolean[][] b(long l, android.os.Bundle bundle, String[] s) { return null; }\n" +
+                "  Outer.Inner c(java.util.Map.Entry e) { return null; }\n" +
+                "  java.util.List<String> d(Map<String, a.B> map) { return null; }\n" +
+                "}";
+
+        final List<String> expected = List.of(
+                "<init>(I)V",
+                "a()V",
+                "b(JLBundle;[LString;)[[Z",
+                "c(LEntry;)LInner;",
+                // type arguments never match stored signatures
+                "d(LB>;)LList<String>;"
+        );
+
+        final List<String> actual = new ArrayList<>();
+        final StringBuilder builder = new StringBuilder();
+
+        for (CallableDeclaration<?> declaration : StaticJavaParser.parse(source).findAll(CallableDeclaration.class)) {
+
+            final String signature = ByteCodeSignature.create(declaration);
+
+            builder.setLength(0);
+            ByteCodeSignature.append(builder, declaration);
+            assertEquals(signature, builder.toString());
+
+            actual.add(signature);
+        }
+
+        actual.sort(null);
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,210 @@
+package io.noties.enhance;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.noties.enhance.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DaemonTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File folder;
+    private File sdk;
+    private String userHome;
+    private int port;
+    private File token;
+
+    @Before
+    public void before() throws Exception {
+
+        folder = temporaryFolder.getRoot();
+
+        // jobs create the application folder in the user home
+        userHome = System.getProperty("user.home");
+        System.setProperty("user.home", new File(folder, "home").getPath());
+
+        sdk = new File(folder, "sdk");
+        write(new File(sdk, "platforms/android-34/data/api-versions.xml"), "<api version=\"3\">\n" +
+                "    <class name=\"android/app/Activity\" since=\"1\">\n" +
+                "        <method name=\"setValue(I)V\" since=\"34\"/>\n" +
+                "    </class>\n" +
+                "    <class name=\"android/app/Added\" since=\"34\"/>\n" +
+                "</api>\n");
+        assertTrue(new File(sdk, "sources/android-34").mkdirs());
+
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+
+        token = new File(folder, "daemon.token");
+
+        final Thread thread = new Thread(() -> Daemon.create(port, token, 1000).run(), "enhance-daemon-test");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @After
+    public void after() {
+        System.setProperty("user.home", userHome);
+    }
+
+    @Test
+    public void job() throws Exception {
+
+        final List<String> first = submit("-sdk", "34", "-sp", sdk.getPath(), "-diff", "-remote");
+
+        assertEquals("X0", first.get(first.size() - 1));
+        assertTrue(first.toString(), first.contains("L[Enhance] android-34"));
+        assertTrue(first.toString(), contains(first, 'O', "android/app/Added"));
+        assertTrue(first.toString(), contains(first, 'O', "setValue(I)V"));
+
+        // api-versions.xml is loaded once
+        final List<String> second = submit("-sdk", "34", "-sp", sdk.getPath(), "-diff");
+        assertEquals("X0", second.get(second.size() - 1));
+        assertTrue(second.toString(), contains(second, 'L', "using loaded api-versions.xml"));
+    }
+
+    @Test
+    public void failedJob() throws Exception {
+
+        final List<String> lines = submit("-sdk", "34", "-sp", new File(folder, "missing").getPath(), "-diff");
+
+        assertEquals("X1", lines.get(lines.size() - 1));
+        assertTrue(lines.toString(), contains(lines, 'L', "Cannot find 'platforms' folder"));
+
+        // daemon accepts jobs after a failed one
+        assertEquals("X0", last(submit("-sdk", "34", "-sp", sdk.getPath(), "-diff")));
+    }
+
+    @Test
+    public void invalidToken() throws Exception {
+
+        // rejected without reading the rest of the request
+        try (Socket socket = connect()) {
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF("invalid");
+            out.flush();
+
+            final List<String> lines = response(socket);
+            assertEquals("X1", last(lines));
+            assertTrue(lines.toString(), contains(lines, 'L', "invalid token"));
+        }
+
+        // valid token is still accepted
+        assertEquals("X0", last(submit("-sdk", "34", "-sp", sdk.getPath(), "-diff")));
+    }
+
+    @Test
+    public void invalidCount() throws Exception {
+        for (int count : new int[]{-1, Integer.MAX_VALUE}) {
+            try (Socket socket = connect()) {
+                final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeUTF(token());
+                out.writeInt(count);
+                out.flush();
+
+                final List<String> lines = response(socket);
+                assertEquals("X1", last(lines));
+                assertTrue(lines.toString(), contains(lines, 'L', "invalid number of arguments: " + count));
+            }
+        }
+    }
+
+    @Test(timeout = 10_000L)
+    public void silentClient() throws Exception {
+
+        // connected, but never sends its request
+        try (Socket silent = connect()) {
+
+            assertEquals("X0", last(submit("-sdk", "34", "-sp", sdk.getPath(), "-diff")));
+
+            // dropped by the daemon
+            assertEquals(-1, silent.getInputStream().read());
+        }
+    }
+
+    private List<String> submit(String... args) throws Exception {
+        try (Socket socket = connect()) {
+
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF(token());
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+
+            return response(socket);
+        }
+    }
+
+    // lines of the response
+    private static List<String> response(Socket socket) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line);
+            if (line.startsWith("X")) {
+                break;
+            }
+        }
+        return lines;
+    }
+
+    // daemon is started on a different thread
+    private Socket connect() throws Exception {
+        for (int i = 0; ; i++) {
+            try {
+                return new Socket(InetAddress.getLoopbackAddress(), port);
+            } catch (ConnectException e) {
+                if (i == 100) {
+                    throw e;
+                }
+                Thread.sleep(50L);
+            }
+        }
+    }
+
+    private String token() throws Exception {
+        for (int i = 0; i < 100 && token.length() == 0; i++) {
+            Thread.sleep(50L);
+        }
+        return new String(Files.readAllBytes(token.toPath()), StandardCharsets.UTF_8).trim();
+    }
+
+    private static boolean contains(List<String> lines, char type, String text) {
+        for (String line : lines) {
+            if (line.charAt(0) == type && line.contains(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String last(List<String> lines) {
+        return lines.get(lines.size() - 1);
+    }
+}
@@ -0,0 +1,96 @@
+package io.noties.enhance;
+
+import io.noties.enhance.options.EnhanceOptions;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+
+import static io.noties.enhance.TestFiles.read;
+import static io.noties.enhance.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EnhanceTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File sdk;
+    private File sources;
+    private File home;
+    private String userHome;
+
+    @Before
+    public void before() throws IOException {
+
+        final File folder = temporaryFolder.getRoot();
+
+        // backups are created in the user home
+        home = new File(folder, "home");
+        userHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.getPath());
+
+        sdk = new File(folder, "sdk");
+        write(new File(sdk, "platforms/android-34/data/api-versions.xml"), "<api version=\"3\">\n" +
+                "    <class name=\"android/app/Activity\" since=\"1\"/>\n" +
+                "</api>\n");
+
+        sources = new File(sdk, "sources/android-34");
+        write(new File(sources, "android/app/Activity.java"), "package android.app;\n\npublic class Activity {}\n");
+        write(new File(sources, "android/app/package.html"), "<html></html>");
+    }
+
+    @After
+    public void after() {
+        System.setProperty("user.home", userHome);
+    }
+
+    @Test
+    public void linkedOutputIsReadOnly() throws IOException {
+
+        run("-sdk", "34", "-sp", sdk.getPath());
+
+        // copied from the backup, stays writable
+        final File output = new File(sources, "android/app/package.html");
+        assertTrue(writable(output));
+
+        // an unchanged file is kept, a changed one is replaced with a link
+        write(output, "changed");
+
+        run("-sdk", "34", "-sp", sdk.getPath(), "-link", "-full");
+
+        assertEquals("<html></html>", read(output));
+
+        // linked to the stored object, which cannot be edited in place
+        final File backup = new File(home, ".enhance-backup/android-34/android/app/package.html");
+        assertTrue(Files.isSameFile(output.toPath(), backup.toPath()));
+        assertFalse(writable(output));
+
+        for (File object : FileUtils.listFiles(new File(home, ".enhance-backup/objects"), null, true)) {
+            assertFalse(object.getPath(), writable(object));
+        }
+    }
+
+    private static void run(String... args) {
+        Enhance.run(EnhanceOptions.create(args), new PrintStream(System.out), null);
+    }
+
+    // checked with permissions, `File.canWrite` is always `true` for root
+    private static boolean writable(File file) throws IOException {
+        if (Files.getFileStore(file.toPath()).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            return Files.getPosixFilePermissions(file.toPath()).contains(PosixFilePermission.OWNER_WRITE);
+        }
+        return file.canWrite();
+    }
+}
@@ -0,0 +1,202 @@
+package io.noties.enhance;
+
+import io.noties.enhance.options.SourceFormat;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.noties.enhance.TestFiles.read;
+import static io.noties.enhance.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EnhanceWriterTest {
+
+    // enough files for every worker to get several
+    private static final int TYPES = 32;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File folder;
+    private File source;
+    private ApiInfoStore store;
+
+    @Before
+    public void before() throws IOException {
+
+        folder = temporaryFolder.getRoot();
+        source = new File(folder, "source");
+
+        final StringBuilder api = new StringBuilder("<api version=\"3\">\n");
+        for (int i = 0; i < TYPES; i++) {
+            final String name = "Type" + i;
+            api.append("    <class name=\"android/app/").append(name).append("\" since=\"").append(i % 34 + 1).append("\">\n")
+                    .append("        <field name=\"VALUE\" since=\"").append(i % 30 + 1).append("\"/>\n")
+                    .append("        <method name=\"setValue(I)V\" since=\"24\" deprecated=\"30\"/>\n")
+                    .append("    </class>\n");
+
+            // sizes differ, so files are processed in a different order than they are listed
+            final StringBuilder java = new StringBuilder("package android.app;\n\n")
+                    .append("public class ").append(name).append(" {\n\n")
+                    .append("    public static final int VALUE = ").append(i).append(";\n\n")
+                    .append("    public void setValue(int value) {\n");
+            for (int line = 0; line < (i * 7) % TYPES; line++) {
+                java.append("        int value").append(line).append(" = value;\n");
+            }
+            java.append("    }\n}\n");
+
+            write(new File(source, "android/app/" + name + ".java"), java.toString());
+        }
+        api.append("    <class name=\"android/app/Outer$Inner\" since=\"5\"/>\n");
+        api.append("</api>\n");
+
+        final File apiVersions = new File(folder, "api-versions.xml");
+        write(apiVersions, api.toString());
+        store = ApiInfoStore.create(apiVersions);
+
+        write(new File(source, "android/app/package.html"), "<body>android.app</body>\n");
+        write(new File(source, "android/os/Missing.java"), "package android.os;\n\npublic class Missing {\n}\n");
+    }
+
+    @Test
+    public void parallelIsSameAsSequential() throws IOException {
+
+        final Map<String, String> sequential = output(1, null);
+        final Map<String, String> parallel = output(4, null);
+
+        assertEquals(TYPES + 2, sequential.size());
+        assertTrue(sequential.get("/android/app/Type1.java").contains("@since"));
+
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void pipelineIsSameAsSequential() throws IOException {
+
+        final Map<String, Integer> workers = new HashMap<>();
+        workers.put("parse", 2);
+        workers.put("print", 2);
+
+        assertEquals(output(1, null), output(1, workers));
+    }
+
+    @Test
+    public void pipelineSpliceIsSameAsSequential() throws IOException {
+
+        // read files are passed between threads, each in own buffer
+        final Map<String, Integer> workers = new HashMap<>();
+        workers.put("read", 2);
+        workers.put("visit", 2);
+        workers.put("print", 2);
+
+        final Map<String, String> sequential = output(1, null, true);
+        assertTrue(sequential.get("/android/app/Type1.java").contains("@since"));
+
+        assertEquals(sequential, output(1, workers, true));
+    }
+
+    @Test
+    public void withoutAppliedApiInfoIsCopied() throws IOException {
+
+        // there is api info for a nested type only, so the file is parsed, but nothing is applied
+        final String java = "package android.app;\n" +
+                "\n" +
+                "public class Outer   {\n" +
+                "    class Other {  }\n" +
+                "}\n";
+        write(new File(source, "android/app/Outer.java"), java);
+
+        for (boolean splice : new boolean[]{false, true}) {
+            assertEquals(java, output(1, null, splice).get("/android/app/Outer.java"));
+        }
+    }
+
+    @Test
+    public void timingsCountEachFileOnce() throws IOException {
+
+        final int files = TYPES + 2;
+
+        for (Map<String, Integer> pipeline : Arrays.asList(null, new HashMap<String, Integer>())) {
+
+            final File destination = new File(folder, pipeline != null ? "timings-pipeline" : "timings");
+            final File manifest = new File(destination.getPath() + ".manifest");
+
+            final Map<String, Long> first = timings(destination, pipeline, manifest);
+            assertEquals(String.valueOf(first), Long.valueOf(files), first.get("check"));
+            assertEquals(String.valueOf(first), Long.valueOf(files), first.get("record"));
+            assertEquals(String.valueOf(first), Long.valueOf(files), first.get("files"));
+            assertEquals(String.valueOf(first), Long.valueOf(0L), first.get("kept"));
+
+            // nothing changed, all files are kept
+            final Map<String, Long> second = timings(destination, pipeline, manifest);
+            assertEquals(String.valueOf(second), Long.valueOf(files), second.get("keep"));
+            assertEquals(String.valueOf(second), Long.valueOf(files), second.get("kept"));
+            assertNull(String.valueOf(second), second.get("check"));
+            assertEquals(String.valueOf(second), Long.valueOf(0L), second.get("files"));
+        }
+    }
+
+    // counts of stages and files from timings of a run
+    private Map<String, Long> timings(File destination, Map<String, Integer> pipeline, File manifestFile) throws IOException {
+        final Timings timings = Timings.create();
+        try (StagedOutput output = StagedOutput.create(destination, false)) {
+            final Manifest manifest = Manifest.load(manifestFile, "inputs");
+            EnhanceWriter.create(34, SourceFormat.NONE, store, ApiVersionFormatter.create(), null, pipeline, null, false, timings)
+                    .write(source, output, manifest);
+            output.commit();
+            manifest.save();
+        }
+        final File json = new File(folder, "timings.json");
+        timings.writeJson(json);
+        final Map<String, Long> counts = new HashMap<>();
+        final Matcher matcher = Pattern.compile("\"([a-z-]+)\": (?:\\{\"wallMs\"[^}]*\"count\": )?(\\d+)")
+                .matcher(read(json));
+        while (matcher.find()) {
+            counts.put(matcher.group(1), Long.parseLong(matcher.group(2)));
+        }
+        return counts;
+    }
+
+    // contents of the written files by their path
+    private Map<String, String> output(int threads, Map<String, Integer> pipeline) throws IOException {
+        return output(threads, pipeline, false);
+    }
+
+    private Map<String, String> output(int threads, Map<String, Integer> pipeline, boolean splice) throws IOException {
+        final File destination = new File(folder, (pipeline != null ? "pipeline" : "threads-" + threads) + (splice ? "-splice" : ""));
+        final ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        try (StagedOutput output = StagedOutput.create(destination, false)) {
+            EnhanceWriter.create(34, SourceFormat.NONE, store, ApiVersionFormatter.create(), pool, pipeline, null, splice, Timings.create())
+                    .write(source, output, Manifest.empty(new File(destination.getPath() + ".manifest"), "inputs"));
+            output.commit();
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return contents(destination);
+    }
+
+    private static Map<String, String> contents(File folder) throws IOException {
+        final Map<String, String> map = new TreeMap<>();
+        final String root = folder.getPath();
+        for (File file : FileUtils.listFiles(folder, null, true)) {
+            map.put(file.getPath().substring(root.length()).replace(File.separatorChar, '/'), read(file));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,125 @@
+package io.noties.enhance;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static io.noties.enhance.TestFiles.read;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class FileBuffersTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void reuse() throws IOException {
+
+        final String large = repeat("class Large { String s = \"\u00e9\u20ac\"; }\n", 1024);
+        final String small = "class Small {}\n";
+        final String empty = "";
+
+        // a smaller file after a larger one must not see the leftover of the previous one
+        for (String contents : new String[]{small, large, small, empty, large}) {
+            final File file = file("Source.java", contents.getBytes(StandardCharsets.UTF_8));
+            assertEquals(contents, FileBuffers.read(file).toString());
+            assertEquals(contents, string(FileBuffers.bytes(file)));
+            assertEquals(contents, string(FileBuffers.encode(contents)));
+        }
+    }
+
+    @Test
+    public void largeBuffersAreNotRetained() throws IOException {
+
+        final File small = file("Small.java", "class Small {}".getBytes(StandardCharsets.UTF_8));
+        final File smaller = file("A.java", "class A {}".getBytes(StandardCharsets.UTF_8));
+        final String contents = repeat("class Large {}\n", 64 * 1024);
+        final File large = file("Large.java", contents.getBytes(StandardCharsets.UTF_8));
+
+        final CharBuffer buffer = FileBuffers.read(small);
+        assertSame(buffer, FileBuffers.read(smaller));
+
+        final CharBuffer largeBuffer = FileBuffers.read(large);
+        assertNotSame(buffer, largeBuffer);
+
+        // the smaller buffer is kept, contents of the large one stay valid
+        assertSame(buffer, FileBuffers.read(small));
+        assertEquals(contents, largeBuffer.toString());
+    }
+
+    @Test
+    public void readInto() throws IOException {
+
+        final File file = file("Source.java", "class Source {}".getBytes(StandardCharsets.UTF_8));
+
+        final CharBuffer owned = CharBuffer.allocate(1024);
+        final CharBuffer read = FileBuffers.read(file, owned);
+        assertSame(owned, read);
+        assertEquals("class Source {}", read.toString());
+
+        // not shared with the thread buffer
+        FileBuffers.read(file("Other.java", "class Other {}".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("class Source {}", read.toString());
+
+        // too small, a larger one is allocated
+        final CharBuffer grown = FileBuffers.read(file, CharBuffer.allocate(0));
+        assertEquals("class Source {}", grown.toString());
+    }
+
+    @Test
+    public void write() throws IOException {
+        final File file = file("Source.java", "previous longer contents".getBytes(StandardCharsets.UTF_8));
+        FileBuffers.write(file, FileBuffers.encode("class A {}"));
+        assertEquals("class A {}", read(file));
+    }
+
+    @Test
+    public void malformed() throws IOException {
+
+        // ISO-8859-1 encoded source, e-acute is not valid UTF-8
+        final File file = file("Latin.java", "class Latin { String s = \"caf\u00e9\"; }".getBytes(StandardCharsets.ISO_8859_1));
+
+        // replaced as the parser did when it read files itself
+        assertEquals("class Latin { String s = \"caf\ufffd\"; }", FileBuffers.read(file).toString());
+
+        // raw bytes are not touched
+        final byte[] bytes = new byte[FileBuffers.bytes(file).remaining()];
+        FileBuffers.bytes(file).get(bytes);
+        assertArrayEquals(Files.readAllBytes(file.toPath()), bytes);
+    }
+
+    @Test
+    public void unmappable() throws IOException {
+        // lone surrogate
+        assertEquals("a?b", string(FileBuffers.encode("a\ud800b")));
+    }
+
+    private File file(String name, byte[] contents) throws IOException {
+        final File file = new File(temporaryFolder.getRoot(), name);
+        FileUtils.writeByteArrayToFile(file, contents);
+        return file;
+    }
+
+    private static String string(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+    }
+
+    private static String repeat(String value, int times) {
+        final StringBuilder builder = new StringBuilder(value.length() * times);
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
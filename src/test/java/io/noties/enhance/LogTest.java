@@ -0,0 +1,92 @@
+package io.noties.enhance;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogTest {
+
+    @After
+    public void after() {
+        Log.listener(null);
+    }
+
+    @Test(timeout = 10_000L)
+    public void failingListenerIsRemoved() {
+
+        final Recorder failing = new Recorder(true);
+        Log.listener(failing);
+
+        Log.log("first");
+        Log.log("second");
+
+        // would block forever, if the failure had stopped the logging thread
+        Log.flush();
+
+        assertEquals(1, failing.messages.size());
+
+        // messages are still delivered to a new listener
+        final Recorder recorder = new Recorder(false);
+        Log.listener(recorder);
+
+        Log.log("third");
+        Log.flush();
+
+        assertEquals(1, recorder.messages.size());
+        assertTrue(recorder.messages.toString(), recorder.messages.contains("third"));
+    }
+
+    @Test(timeout = 10_000L)
+    public void failingStatusListenerIsRemoved() {
+
+        final Recorder failing = new Recorder(false) {
+            @Override
+            public void status(@Nullable String status) {
+                throw new IllegalStateException("status");
+            }
+        };
+        Log.listener(failing);
+
+        Log.status("status");
+        Log.log("first");
+        Log.flush();
+
+        Log.log("second");
+        Log.flush();
+
+        Log.status(null);
+
+        // removed after the status has failed, so it could get the first message only
+        assertTrue(failing.messages.toString(), !failing.messages.contains("second"));
+    }
+
+    private static class Recorder implements Log.Listener {
+
+        final List<String> messages = new CopyOnWriteArrayList<>();
+
+        private final boolean fail;
+
+        Recorder(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public void message(@Nonnull String message) {
+            messages.add(message);
+            if (fail) {
+                throw new IllegalStateException("failed: " + message);
+            }
+        }
+
+        @Override
+        public void status(@Nullable String status) {
+        }
+    }
+}
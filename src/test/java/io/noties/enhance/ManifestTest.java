@@ -0,0 +1,103 @@
+package io.noties.enhance;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static io.noties.enhance.TestFiles.write;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ManifestTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+    private File source;
+    private File output;
+
+    @Before
+    public void before() throws IOException {
+        final File folder = temporaryFolder.getRoot();
+        file = new File(folder, "android-34.manifest");
+        source = new File(folder, "source.java");
+        output = new File(folder, "output.java");
+        write(source, "source");
+        write(output, "output");
+    }
+
+    @Test
+    public void upToDate() throws IOException {
+
+        save("inputs");
+
+        final Manifest manifest = Manifest.load(file, "inputs");
+        assertFalse(manifest.isEmpty());
+        assertTrue(manifest.isUpToDate("/source.java", source, output));
+        assertFalse(manifest.isUpToDate("/missing.java", source, output));
+
+        // kept entries are saved again
+        manifest.save();
+        assertTrue(Manifest.load(file, "inputs").isUpToDate("/source.java", source, output));
+    }
+
+    @Test
+    public void differentInputs() throws IOException {
+
+        save("inputs");
+
+        final Manifest manifest = Manifest.load(file, "other");
+        assertTrue(manifest.isEmpty());
+        assertFalse(manifest.isUpToDate("/source.java", source, output));
+    }
+
+    @Test
+    public void sourceTouched() throws IOException {
+
+        save("inputs");
+
+        // same contents with a different modification time
+        assertTrue(source.setLastModified(source.lastModified() - 10_000L));
+        assertTrue(Manifest.load(file, "inputs").isUpToDate("/source.java", source, output));
+
+        // same length, different contents (modification time is set, as it is not precise enough)
+        final long modified = source.lastModified();
+        write(source, "SOURCE");
+        assertTrue(source.setLastModified(modified - 10_000L));
+        assertFalse(Manifest.load(file, "inputs").isUpToDate("/source.java", source, output));
+    }
+
+    @Test
+    public void outputEdited() throws IOException {
+
+        save("inputs");
+
+        // same length, edited in place
+        final long modified = output.lastModified();
+        write(output, "OUTPUT");
+        assertTrue(output.setLastModified(modified + 10_000L));
+        assertFalse(Manifest.load(file, "inputs").isUpToDate("/source.java", source, output));
+
+        assertTrue(output.delete());
+        assertFalse(Manifest.load(file, "inputs").isUpToDate("/source.java", source, output));
+    }
+
+    @Test
+    public void corrupted() throws IOException {
+
+        write(file, "# enhance manifest\ninputs inputs\n/source.java\tnot-a-number\t0\thash\t0\t0\n");
+
+        assertTrue(Manifest.load(file, "inputs").isEmpty());
+    }
+
+    private void save(String inputs) throws IOException {
+        final Manifest manifest = Manifest.empty(file, inputs);
+        manifest.record("/source.java", source, output);
+        manifest.save();
+    }
+}
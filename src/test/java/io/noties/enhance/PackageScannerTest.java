@@ -0,0 +1,35 @@
+package io.noties.enhance;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class PackageScannerTest {
+
+    @Test
+    public void scan() {
+
+        final Map<String, String> map = new LinkedHashMap<String, String>() {{
+            put("package android.app;\n\nclass Activity {}", "android.app");
+            put("/*\n * Copyright (C) 2006 The Android Open Source Project\n */\n\npackage android.app;", "android.app");
+            put("// comment\r\n/** javadoc */ package  a . b /* c */ . c ;", "a.b.c");
+            put("\uFEFFpackage a;", "a");
+            put("import java.util.List;\nclass A {}", "");
+            put("class A {}", "");
+            put("@RestrictTo\npackage android.app;", null);
+            put("/* not closed", null);
+            put("package android.app", null);
+            put("package android.app.;", null);
+            put("", null);
+        }};
+
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            final byte[] bytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            assertEquals(entry.getKey(), entry.getValue(), PackageScanner.scan(bytes, bytes.length));
+        }
+    }
+}
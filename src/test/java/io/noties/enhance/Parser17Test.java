@@ -0,0 +1,95 @@
+package io.noties.enhance;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.noties.enhance.EnhanceWriterImpl.Parser17.hasRestrictedIdentifiers;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Parser17Test {
+
+    private static final String IDENTIFIERS = "package android.os;\n" +
+            "\n" +
+            "class Identifiers {\n" +
+            "    void check(boolean sealed, int permits) {\n" +
+            "    }\n" +
+            "}\n";
+
+    private static final String KEYWORDS = "package android.os;\n" +
+            "\n" +
+            "sealed interface Shape permits Circle {\n" +
+            "}\n" +
+            "\n" +
+            "final class Circle implements Shape {\n" +
+            "}\n";
+
+    @Test
+    public void identifiers() {
+        assertTrue(hasRestrictedIdentifiers(IDENTIFIERS));
+        assertTrue(hasRestrictedIdentifiers("int sealed;"));
+        assertTrue(hasRestrictedIdentifiers("check(permits)"));
+        // a keyword cannot be told from an identifier lexically
+        assertTrue(hasRestrictedIdentifiers(KEYWORDS));
+    }
+
+    @Test
+    public void otherIdentifiers() {
+        assertFalse(hasRestrictedIdentifiers("int unsealed, sealedValue, permitsCount, sealed_;"));
+        assertFalse(hasRestrictedIdentifiers("class Permits extends Sealed {}"));
+        assertFalse(hasRestrictedIdentifiers(""));
+    }
+
+    @Test
+    public void comments() {
+        assertFalse(hasRestrictedIdentifiers("// sealed\nint value;"));
+        assertFalse(hasRestrictedIdentifiers("int value; // permits"));
+        assertFalse(hasRestrictedIdentifiers("/* sealed */ int value;"));
+        assertFalse(hasRestrictedIdentifiers("/**\n * permits\n */\nint value;"));
+        // not closed
+        assertFalse(hasRestrictedIdentifiers("/* sealed"));
+        // code after a comment is scanned
+        assertTrue(hasRestrictedIdentifiers("/* comment */ int sealed;"));
+        assertTrue(hasRestrictedIdentifiers("// comment\nint permits;"));
+    }
+
+    @Test
+    public void literals() {
+        assertFalse(hasRestrictedIdentifiers("String value = \"sealed\";"));
+        assertFalse(hasRestrictedIdentifiers("String value = \"escaped \\\" permits\";"));
+        assertFalse(hasRestrictedIdentifiers("char value = '\\''; String other = \"sealed\";"));
+        assertFalse(hasRestrictedIdentifiers("char value = '\"'; // sealed"));
+        // code after a literal is scanned
+        assertTrue(hasRestrictedIdentifiers("String value = \"value\"; int sealed;"));
+        assertTrue(hasRestrictedIdentifiers("char value = 's'; int permits;"));
+    }
+
+    @Test
+    public void textBlocks() {
+        assertFalse(hasRestrictedIdentifiers("String value = \"\"\"\n    sealed \"quoted\" permits\n    \"\"\";"));
+        // not closed
+        assertFalse(hasRestrictedIdentifiers("String value = \"\"\"\n    sealed"));
+        assertTrue(hasRestrictedIdentifiers("String value = \"\"\"\n    text\n    \"\"\"; int sealed;"));
+    }
+
+    @Test
+    public void parse() {
+
+        final AtomicInteger fallbacks = new AtomicInteger();
+        final EnhanceWriterImpl.Parser17 parser = new EnhanceWriterImpl.Parser17();
+
+        // java-11 is guessed right
+        parser.parse(IDENTIFIERS, fallbacks);
+        assertEquals(0, fallbacks.get());
+
+        // no mentions, java-17 is guessed right
+        parser.parse("package android.os;\n\nrecord Point(int x, int y) {\n}\n", fallbacks);
+        assertEquals(0, fallbacks.get());
+
+        // keywords, java-11 is guessed wrong, java-17 is used and the fallback is counted
+        parser.parse(KEYWORDS, fallbacks);
+        assertEquals(1, fallbacks.get());
+    }
+}
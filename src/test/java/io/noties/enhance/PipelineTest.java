@@ -0,0 +1,140 @@
+package io.noties.enhance;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelineTest {
+
+    @Test
+    public void allItemsPassAllStages() {
+
+        final List<int[]> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            items.add(new int[]{i, 0});
+        }
+
+        final Set<Integer> done = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        final Set<Integer> skipped = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+        Pipeline.<int[]>create()
+                .stage("first", 2, item -> {
+                    item[1]++;
+                    // odd items are done in the first stage
+                    if (item[0] % 2 != 0) {
+                        skipped.add(item[0]);
+                        return false;
+                    }
+                    return true;
+                })
+                .stage("second", 3, item -> {
+                    item[1]++;
+                    return true;
+                })
+                .stage("third", 1, item -> {
+                    item[1]++;
+                    done.add(item[0]);
+                    return true;
+                })
+                .run(items);
+
+        assertEquals(500, done.size());
+        assertEquals(500, skipped.size());
+
+        for (int[] item : items) {
+            assertEquals(item[0] % 2 == 0 ? 3 : 1, item[1]);
+        }
+    }
+
+    @Test
+    public void failureStopsAllStages() {
+
+        final List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            items.add(i);
+        }
+
+        try {
+            Pipeline.<Integer>create()
+                    .stage("first", 1, item -> true)
+                    .stage("second", 2, item -> {
+                        if (item == 100) {
+                            throw new IllegalStateException("failed: " + item);
+                        }
+                        return true;
+                    })
+                    .stage("third", 1, item -> true)
+                    .run(items);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("failed: 100"));
+        }
+    }
+
+    @Test
+    public void executorThreadsAreReused() throws InterruptedException {
+
+        final List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(i);
+        }
+
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+
+            final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+            final Set<String> names = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+            for (int run = 0; run < 3; run++) {
+
+                // the first run fails, threads must not stay interrupted
+                final boolean failing = run == 0;
+
+                try {
+                    Pipeline.<Integer>create(executor)
+                            .stage("first", 2, item -> {
+                                assertFalse(Thread.currentThread().isInterrupted());
+                                threads.add(Thread.currentThread());
+                                names.add(Thread.currentThread().getName());
+                                return true;
+                            })
+                            .stage("second", 2, item -> {
+                                if (failing && item == 50) {
+                                    throw new IllegalStateException("failed");
+                                }
+                                threads.add(Thread.currentThread());
+                                return true;
+                            })
+                            .run(items);
+                    assertFalse(failing);
+                } catch (IllegalStateException e) {
+                    assertTrue(failing);
+                }
+
+                // workers are done with the run, but their tasks could still be finishing
+                Thread.sleep(50L);
+            }
+
+            // 4 workers each run, a thread for each would make 12
+            assertTrue(threads.toString(), threads.size() < 12);
+            assertTrue(names.toString(), names.contains("enhance-first-1"));
+            for (Thread thread : threads) {
+                assertFalse(thread.getName(), thread.getName().startsWith("enhance-"));
+            }
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
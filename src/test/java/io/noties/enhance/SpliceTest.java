@@ -0,0 +1,135 @@
+package io.noties.enhance;
+
+import io.noties.enhance.options.SourceFormat;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static io.noties.enhance.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SpliceTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+    private File apiVersions;
+
+    @Before
+    public void before() throws IOException {
+        file = new File(temporaryFolder.getRoot(), "Activity.java");
+        apiVersions = new File(temporaryFolder.getRoot(), "api-versions.xml");
+        write(apiVersions, "<api version=\"3\">\n" +
+                "    <class name=\"android/app/Activity\" since=\"1\">\n" +
+                "        <field name=\"RESULT_OK\" since=\"1\"/>\n" +
+                "        <method name=\"setValue(I)V\" since=\"29\" deprecated=\"30\"/>\n" +
+                "    </class>\n" +
+                "</api>\n");
+    }
+
+    @Test
+    public void tagsAreInserted() throws IOException {
+
+        final String source = "package android.app;\n" +
+                "\n" +
+                "import android.os.Bundle;\n" +
+                "\n" +
+                "public class Activity {\n" +
+                "\n" +
+                "    // not a javadoc\n" +
+                "    public static final int RESULT_OK = -1;\n" +
+                "\n" +
+                "    /**\n" +
+                "     * Keeps   its   formatting\n" +
+                "     */\n" +
+                "    public void setValue(int value) {\n" +
+                "        int  unformatted=value;\n" +
+                "    }\n" +
+                "}\n";
+
+        final String expected = "package android.app;\n" +
+                "\n" +
+                "import android.os.Bundle;\n" +
+                "\n" +
+                "/**\n" +
+                " * @since 1.0 (initial) (1)\n" +
+                " */\n" +
+                "public class Activity {\n" +
+                "\n" +
+                "    // not a javadoc\n" +
+                "    /**\n" +
+                "     * @since 1.0 (initial) (1)\n" +
+                "     */\n" +
+                "    public static final int RESULT_OK = -1;\n" +
+                "\n" +
+                "    /**\n" +
+                "     * Keeps   its   formatting\n" +
+                "     * @since 10 Android Q (29)\n" +
+                "     * @deprecated 11 Android R (30)\n" +
+                "     */\n" +
+                "    public void setValue(int value) {\n" +
+                "        int  unformatted=value;\n" +
+                "    }\n" +
+                "}\n";
+
+        assertEquals(expected, process(source));
+    }
+
+    @Test
+    public void lineSeparatorIsKept() throws IOException {
+
+        final String source = "package android.app;\r\n" +
+                "\r\n" +
+                "public class Activity {\r\n" +
+                "}\r\n";
+
+        final String expected = "package android.app;\r\n" +
+                "\r\n" +
+                "/**\r\n" +
+                " * @since 1.0 (initial) (1)\r\n" +
+                " */\r\n" +
+                "public class Activity {\r\n" +
+                "}\r\n";
+
+        assertEquals(expected, process(source));
+    }
+
+    @Test
+    public void withoutApiInfo() throws IOException {
+
+        final String source = "package android.app;\n" +
+                "\n" +
+                "public class Missing {\n" +
+                "}\n";
+
+        assertNull(process(source));
+    }
+
+    private String process(String source) throws IOException {
+
+        write(file, source);
+
+        final Timings timings = Timings.create();
+
+        final EnhanceWriterImpl writer = new EnhanceWriterImpl(
+                34,
+                SourceFormat.NONE,
+                ApiInfoStore.create(apiVersions),
+                ApiVersionFormatter.create(),
+                null,
+                null,
+                null,
+                true,
+                timings
+        );
+
+        final CharSequence out = writer.processJavaFile(file, timings.start());
+        return out != null ? out.toString() : null;
+    }
+}
@@ -0,0 +1,106 @@
+package io.noties.enhance;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static io.noties.enhance.TestFiles.read;
+import static io.noties.enhance.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StagedOutputTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File folder;
+    private File target;
+
+    @Before
+    public void before() {
+        folder = temporaryFolder.getRoot();
+        target = new File(folder, "android-34");
+    }
+
+    @Test
+    public void commit() throws IOException {
+
+        write(new File(target, "Same.java"), "same");
+        write(new File(target, "Changed.java"), "old");
+        write(new File(target, "Removed.java"), "removed");
+
+        final File same = new File(target, "Same.java");
+        assertTrue(same.setLastModified(1_000_000L));
+
+        try (StagedOutput output = StagedOutput.create(target, false)) {
+
+            final File staging = output.staging();
+            assertTrue(staging.isDirectory());
+
+            assertFalse(output.write(same, new File(staging, "Same.java"), "same"));
+            assertTrue(output.write(new File(target, "Changed.java"), new File(staging, "Changed.java"), "new"));
+            assertTrue(output.write(new File(target, "Added.java"), new File(staging, "Added.java"), "added"));
+
+            // target is not modified until commit
+            assertEquals("old", read(new File(target, "Changed.java")));
+
+            output.commit();
+
+            assertFalse(staging.exists());
+        }
+
+        assertEquals("same", read(new File(target, "Same.java")));
+        // kept file has the same modification time
+        assertEquals(1_000_000L, new File(target, "Same.java").lastModified());
+        assertEquals("new", read(new File(target, "Changed.java")));
+        assertEquals("added", read(new File(target, "Added.java")));
+        assertFalse(new File(target, "Removed.java").exists());
+
+        assertFalse(new File(folder, ".android-34.previous").exists());
+    }
+
+    @Test
+    public void recover() throws IOException {
+
+        // interrupted after the target has been moved away
+        final File previous = new File(folder, ".android-34.previous");
+        write(new File(previous, "Activity.java"), "activity");
+        write(new File(folder, ".android-34.staging/Partial.java"), "partial");
+
+        assertTrue(StagedOutput.isInterrupted(target));
+
+        try (StagedOutput output = StagedOutput.create(target, false)) {
+            assertEquals("activity", read(new File(target, "Activity.java")));
+            assertFalse(previous.exists());
+            // leftovers are removed
+            assertFalse(new File(output.staging(), "Partial.java").exists());
+        }
+
+        assertFalse(StagedOutput.isInterrupted(target));
+    }
+
+    @Test
+    public void locked() throws IOException {
+
+        assertTrue(target.mkdirs());
+
+        try (StagedOutput ignored = StagedOutput.create(target, false)) {
+            try {
+                StagedOutput.create(target, false);
+                fail();
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(".android-34.lock"));
+            }
+        }
+
+        // released on close
+        StagedOutput.create(target, false).close();
+    }
+}
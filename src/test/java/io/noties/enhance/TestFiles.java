@@ -0,0 +1,27 @@
+package io.noties.enhance;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Text files of tests (UTF-8), which are created in a `TemporaryFolder` rule of a test
+ */
+abstract class TestFiles {
+
+    /**
+     * Writes the file, creating missing parent folders
+     */
+    static void write(File file, String contents) throws IOException {
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+    }
+
+    static String read(File file) throws IOException {
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    }
+
+    private TestFiles() {
+    }
+}
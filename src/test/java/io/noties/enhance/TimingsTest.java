@@ -0,0 +1,81 @@
+package io.noties.enhance;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static io.noties.enhance.TestFiles.read;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimingsTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void before() {
+        file = new File(temporaryFolder.getRoot(), "timings.json");
+    }
+
+    @Test
+    public void json() throws Exception {
+
+        final Timings timings = Timings.create();
+
+        // processed by different threads, stages are summed
+        final Thread thread = new Thread(() -> {
+            final Timings.Stopwatch stopwatch = timings.start();
+            stopwatch.lap(Timings.Stage.READ);
+            stopwatch.lap(Timings.Stage.PARSE);
+            stopwatch.file("/android/app/Fast.java", 1024);
+        });
+        thread.start();
+        thread.join();
+
+        final Timings.Stopwatch stopwatch = timings.start();
+        stopwatch.lap(Timings.Stage.READ);
+        Thread.sleep(20L);
+        stopwatch.lap(Timings.Stage.PARSE);
+        stopwatch.file("/android/app/\"Slow\".java", 2048);
+
+        timings.writeJson(file);
+
+        final String json = read(file);
+
+        assertTrue(json, json.contains("\"read\": {"));
+        assertTrue(json, json.contains("\"count\": 2}"));
+        // stages that have not been measured are omitted
+        assertFalse(json, json.contains("\"format\""));
+        assertTrue(json, json.contains("\"files\": 2"));
+        assertTrue(json, json.contains("\"percentilesMs\": {"));
+
+        // slowest first, path is escaped
+        final int slow = json.indexOf("{\"path\": \"/android/app/\\\"Slow\\\".java\"");
+        final int fast = json.indexOf("{\"path\": \"/android/app/Fast.java\"");
+        assertTrue(json, slow > 0);
+        assertTrue(json, fast > slow);
+        assertTrue(json, json.contains("\"length\": 2048}"));
+    }
+
+    @Test
+    public void withoutFiles() throws IOException {
+
+        final Timings timings = Timings.create();
+        timings.start().lap(Timings.Stage.API_VERSIONS);
+
+        timings.writeJson(file);
+
+        final String json = read(file);
+        assertTrue(json, json.contains("\"api-versions\": {"));
+        assertTrue(json, json.endsWith("\"files\": 0,\n  \"kept\": 0\n}\n"));
+        assertEquals(-1, json.indexOf("slowest"));
+    }
+}
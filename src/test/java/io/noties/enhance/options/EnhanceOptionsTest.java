@@ -0,0 +1,55 @@
+package io.noties.enhance.options;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EnhanceOptionsTest {
+
+    @Test
+    public void sdks() {
+        assertEquals(Arrays.asList(28, 30, 31, 32), EnhanceOptions.create(new String[]{"-sdk", "28,30..32"}).sdks());
+        assertEquals(Arrays.asList(1, 2), EnhanceOptions.create(new String[]{"-sdk", "1..2"}).sdks());
+    }
+
+    @Test
+    public void invalidSdks() {
+        invalid("Invalid SDK version", "-sdk", "abc");
+        invalid("Invalid SDK version", "-sdk", "0");
+        invalid("Invalid SDK version", "-sdk", "-1..34");
+        invalid("Invalid SDK version", "-sdk", "30,0..2");
+        invalid("Invalid SDK range", "-sdk", "34..30");
+        invalid("SDK range is too large", "-sdk", "1..2000000000");
+        invalid("SDK range is too large", "-sdk", "34..2147483647");
+        invalid("Invalid SDK version", "-sdk", "34", "-diff", "0..34");
+    }
+
+    @Test
+    public void threads() {
+        assertEquals(1, EnhanceOptions.create(new String[]{"-sdk", "34"}).threads());
+        assertEquals(4, EnhanceOptions.create(new String[]{"-sdk", "34", "-t", "4"}).threads());
+        assertEquals(Runtime.getRuntime().availableProcessors(),
+                EnhanceOptions.create(new String[]{"-sdk", "34", "-t", "0"}).threads());
+    }
+
+    @Test
+    public void invalidThreads() {
+        // reported when options are created, not when threads are requested
+        invalid("Invalid number of threads: `four`", "-sdk", "34", "-t", "four");
+        invalid("Invalid number of threads: `-2`", "-sdk", "34", "-t", "-2");
+        invalid("Invalid number of threads", "-daemon", "-t", "many");
+    }
+
+    private static void invalid(String message, String... args) {
+        try {
+            EnhanceOptions.create(args);
+            fail(Arrays.toString(args));
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}